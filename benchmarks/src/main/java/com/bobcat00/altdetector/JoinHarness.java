@@ -0,0 +1,341 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
+
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import com.bobcat00.altdetector.benchmarks.Latencies;
+import com.bobcat00.altdetector.database.Database;
+import com.bobcat00.altdetector.database.PoolMetrics;
+
+// The plugin on a MockServer with the real Listeners, for the load tools.
+// Each join goes through the same tasks as on a server: the async database
+// update and alt lookup, then the notification on the main thread 2 ticks
+// later. In prelogin mode, pre-login is fired on an async thread first.
+//
+// A staff player with altdetector.notify is online, and the time from each
+// join to its notification is recorded. Other players stay online until
+// max-online newer players have joined.
+
+public class JoinHarness
+{
+    private static final long WAIT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(MockServer.TICK_MILLIS);
+    
+    final MockServer server;
+    final AltDetector plugin;
+    final Listeners listeners;
+    final PoolMetrics poolMetrics;
+    final int maxOnline;
+    
+    // Main thread only
+    final ArrayDeque<Player> online = new ArrayDeque<Player>();
+    int joins = 0;
+    int ticks = 0;
+    
+    // Join time by name, until the notification arrives
+    final Map<String, Long> pending = new ConcurrentHashMap<String, Long>();
+    
+    final Latencies alertLatencies = new Latencies();
+    final Latencies tickLag = new Latencies();
+    
+    // Constructor. Opens the database in the config, with its files in
+    // folder.
+    
+    JoinHarness(File folder, YamlConfiguration config, int maxOnline) throws ReflectiveOperationException
+    {
+        this.maxOnline = maxOnline;
+        folder.mkdirs();
+        
+        server = new MockServer();
+        plugin = server.createPlugin(folder, config);
+        
+        Database database = Database.create(plugin, plugin.config.getDatabaseType(), plugin.config.getSqlDebug(), plugin.config.getMysqlPrefix());
+        if (!database.initialize())
+        {
+            database.closeDataSource();
+            throw new IllegalStateException("Unable to open " + plugin.config.getDatabaseType() + " database");
+        }
+        plugin.database = database;
+        poolMetrics = PoolMetrics.attach(database);
+        
+        listeners = new Listeners(plugin);
+        server.addPlayer(player("Staff", new UUID(0L, 0L), new InetSocketAddress("127.0.0.1", 25565), true));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Settings from the command line, as setting=value
+    
+    static Map<String, String> parseArgs(String[] args, String usage)
+    {
+        Map<String, String> settings = new LinkedHashMap<String, String>();
+        for (String arg : args)
+        {
+            int equals = arg.indexOf('=');
+            if (equals < 1)
+            {
+                System.err.println("Usage: " + usage);
+                System.exit(1);
+            }
+            settings.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        return settings;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The default config.yml with overrides, which are the settings left after
+    // the tool has removed its own. The database is SQLite unless overridden.
+    
+    static YamlConfiguration loadConfig(Map<String, String> overrides) throws IOException
+    {
+        YamlConfiguration config;
+        try (Reader reader = new InputStreamReader(JoinHarness.class.getResourceAsStream("/config.yml"), StandardCharsets.UTF_8))
+        {
+            config = YamlConfiguration.loadConfiguration(reader);
+        }
+        config.set("database-type", "sqlite");
+        for (Map.Entry<String, String> entry : overrides.entrySet())
+        {
+            config.set(entry.getKey(), value(entry.getValue()));
+        }
+        
+        // Notifications must start with the name
+        config.set("join-player-prefix", "");
+        config.set("join-player", "{0} may be an alt of ");
+        return config;
+    }
+    
+    // Setting from the command line as the type config.yml would have
+    
+    private static Object value(String text)
+    {
+        if (text.equals("true") || text.equals("false"))
+        {
+            return Boolean.valueOf(text);
+        }
+        try
+        {
+            return Integer.valueOf(text);
+        }
+        catch (NumberFormatException e)
+        {
+            return text;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A player. Staff have altdetector.notify and record the notifications
+    // they receive.
+    
+    private Player player(String name, UUID uuid, InetSocketAddress address, boolean staff)
+    {
+        return Mocks.implement(Player.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+            case "getName":
+                return name;
+            case "getUniqueId":
+                return uuid;
+            case "getAddress":
+                return address;
+            case "hasPermission":
+                return staff && "altdetector.notify".equals(args[0]);
+            case "getMetadata":
+                return Collections.emptyList();
+            case "sendMessage":
+                if (staff && (args[0] instanceof String))
+                {
+                    notified((String) args[0]);
+                }
+                return null;
+            default:
+                return Mocks.defaultValue(method.getReturnType());
+            }
+        });
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Notification received by staff - main thread. The name is the first word
+    // of the join-player message.
+    
+    private void notified(String message)
+    {
+        String text = ChatColor.stripColor(message);
+        int end = text.indexOf(' ');
+        Long joinNanos = pending.remove((end < 0) ? text : text.substring(0, end));
+        if (joinNanos != null)
+        {
+            alertLatencies.record(System.nanoTime() - joinNanos);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A player joins - main thread
+    
+    void join(String name, UUID uuid, InetAddress address)
+    {
+        Player player = player(name, uuid, new InetSocketAddress(address, 25565), false);
+        pending.put(name, System.nanoTime());
+        ++joins;
+        
+        if (plugin.config.isPreLoginMode())
+        {
+            // The server fires pre-login on a network thread, and the join
+            // follows on the main thread
+            server.asyncPool.execute(() ->
+            {
+                listeners.onAsyncPlayerPreLogin(new AsyncPlayerPreLoginEvent(name, address, uuid));
+                server.mainThread.execute(() -> joined(player));
+            });
+        }
+        else
+        {
+            joined(player);
+        }
+    }
+    
+    // Player is online - main thread
+    
+    private void joined(Player player)
+    {
+        if (online.size() >= maxOnline)
+        {
+            server.removePlayer(online.removeFirst());
+        }
+        online.addLast(player);
+        server.addPlayer(player);
+        listeners.onPlayerJoin(new PlayerJoinEvent(player, null));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Call tick on the main thread every tick, with the tick number, until it
+    // returns false. Then wait while notifications are still arriving. Returns
+    // the time taken by the ticks in nanoseconds.
+    
+    long run(IntPredicate tick) throws InterruptedException
+    {
+        // Keep the notifications off the console, which would be the bottleneck
+        plugin.getLogger().setLevel(Level.WARNING);
+        
+        CountDownLatch done = new CountDownLatch(1);
+        long startNanos = System.nanoTime();
+        ScheduledFuture<?> ticker = server.mainThread.scheduleAtFixedRate(() ->
+        {
+            if (done.getCount() == 0)
+            {
+                return;
+            }
+            tickLag.record(Math.max(0L, System.nanoTime() - startNanos - ticks * TICK_NANOS));
+            if (!tick.test(ticks++))
+            {
+                done.countDown();
+            }
+        }, 0L, MockServer.TICK_MILLIS, TimeUnit.MILLISECONDS);
+        done.await();
+        ticker.cancel(false);
+        long tickNanos = System.nanoTime() - startNanos;
+        
+        // Joins without alts have no notification, so stop once the async
+        // tasks have been idle a while
+        int lastCount = -1;
+        long lastProgress = System.nanoTime();
+        long idleSince = -1L;
+        while (!pending.isEmpty() && (System.nanoTime() - lastProgress < WAIT_NANOS))
+        {
+            Thread.sleep(100L);
+            long now = System.nanoTime();
+            if (alertLatencies.count() != lastCount)
+            {
+                lastCount = alertLatencies.count();
+                lastProgress = now;
+            }
+            if (!server.isAsyncIdle())
+            {
+                idleSince = -1L;
+            }
+            else if (idleSince < 0)
+            {
+                idleSince = now;
+            }
+            else if (now - idleSince > IDLE_NANOS)
+            {
+                break;
+            }
+        }
+        return tickNanos;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Print the results of a run
+    
+    void report(long tickNanos)
+    {
+        System.out.println();
+        System.out.println("Database:      " + plugin.database.toString() + ", join-mode " + plugin.getConfig().getString("join-mode"));
+        System.out.println("Joins:         " + joins + String.format(" in %.1f s", tickNanos / 1e9));
+        System.out.println("Notifications: " + alertLatencies.count() + " (" + pending.size() + " joins without one)");
+        System.out.println("Join to alert: " + alertLatencies.summary() + ", including the 2 tick wait");
+        System.out.println("Tick lag:      " + tickLag.summary());
+        if (poolMetrics != null)
+        {
+            System.out.println("Pool wait:     " + poolMetrics.waits.summary() + ", " + poolMetrics.timeouts.get() + " timeouts");
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Stop the server and close the database
+    
+    void close() throws InterruptedException
+    {
+        server.shutdown();
+        plugin.database.closeDataSource();
+    }
+
+}
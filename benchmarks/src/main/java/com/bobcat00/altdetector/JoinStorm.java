@@ -0,0 +1,144 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import com.bobcat00.altdetector.benchmarks.UniformDataset;
+
+// Load generator for a burst of joins, such as everyone reconnecting after a
+// restart, run on a JoinHarness. Every join is from an address shared with
+// other players in a UniformDataset, so every join has alts. Most joins are
+// returning players and the rest are new accounts.
+//
+// Run with
+//   java -cp target/benchmarks.jar com.bobcat00.altdetector.JoinStorm [setting=value ...]
+// Storm settings are rate (joins per second), seconds, rows (dataset size),
+// new-fraction and max-online. Any other setting overrides config.yml, for
+// example database-type=mysql mysql.hostname=127.0.0.1. Each database type and
+// size has its own folder under target/joinstorm, and the dataset is only
+// inserted the first time.
+
+public class JoinStorm
+{
+    private static final long NEW_PLAYER_UUID_MSB = 0x5704D5L;
+    
+    final JoinHarness harness;
+    final UniformDataset dataset;
+    
+    final double rate;
+    final int seconds;
+    final double newFraction;
+    
+    final Random random = new Random(1);
+    final int firstPlayer;
+    
+    // Constructor
+    
+    JoinStorm(Map<String, String> settings) throws Exception
+    {
+        rate        = Double.parseDouble(setting(settings, "rate", "100"));
+        seconds     = Integer.parseInt(setting(settings, "seconds", "30"));
+        newFraction = Double.parseDouble(setting(settings, "new-fraction", "0.1"));
+        int maxOnline = Integer.parseInt(setting(settings, "max-online", "1000"));
+        int rows = Integer.parseInt(setting(settings, "rows", "100000"));
+        
+        YamlConfiguration config = JoinHarness.loadConfig(settings);
+        File folder = new File("target/joinstorm/" + config.getString("database-type") + "-" + rows);
+        harness = new JoinHarness(folder, config, maxOnline);
+        
+        dataset = new UniformDataset(rows);
+        File marker = new File(folder, "generated");
+        if (!marker.exists())
+        {
+            System.out.println("Inserting " + rows + " rows");
+            if (!dataset.insert(harness.plugin.database))
+            {
+                harness.close();
+                throw new IllegalStateException("Unable to insert dataset");
+            }
+            Files.write(marker.toPath(), Integer.toString(rows).getBytes(StandardCharsets.UTF_8));
+        }
+        firstPlayer = random.nextInt(dataset.getPlayers());
+    }
+    
+    private static String setting(Map<String, String> settings, String key, String defaultValue)
+    {
+        String value = settings.remove(key);
+        return (value != null) ? value : defaultValue;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // One server tick - main thread. Joins are spread evenly over the ticks.
+    
+    private boolean tick(int tick)
+    {
+        int due = (int) (rate * (tick + 1) * MockServer.TICK_MILLIS / 1000.0);
+        while (harness.joins < due)
+        {
+            join(harness.joins);
+        }
+        return tick + 1 < seconds * 1000L / MockServer.TICK_MILLIS;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Join number n - main thread. Returning players take turns so their names
+    // are unique as long as the dataset has more players than the storm has
+    // joins. New players join from the shared address of a random player.
+    
+    private void join(int n)
+    {
+        if (random.nextDouble() < newFraction)
+        {
+            String ip = dataset.sharedIp(random.nextInt(dataset.getPlayers()));
+            harness.join("storm" + n, new UUID(NEW_PLAYER_UUID_MSB, n), new InetSocketAddress(ip, 0).getAddress());
+        }
+        else
+        {
+            int p = (firstPlayer + n) % dataset.getPlayers();
+            String ip = dataset.sharedIp(p);
+            harness.join(dataset.name(p), UUID.fromString(dataset.uuid(p)), new InetSocketAddress(ip, 0).getAddress());
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    public static void main(String[] args) throws Exception
+    {
+        JoinStorm storm = new JoinStorm(JoinHarness.parseArgs(args, "JoinStorm [setting=value ...]"));
+        try
+        {
+            System.out.println("Storm of " + storm.rate + " joins per second for " + storm.seconds + " seconds");
+            storm.harness.report(storm.harness.run(storm::tick));
+        }
+        finally
+        {
+            storm.harness.close();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Benchmarks of the code that runs on the server's main thread, where the
+// time comes out of the tick. Allocation matters as much as time there, so
+// main runs them with the GC profiler, which reports the allocation rate and
+// bytes per operation. Run with:
+//
+//   java -cp benchmarks/target/benchmarks.jar com.bobcat00.altdetector.MainThreadBenchmark
+//
+// or through the JMH runner with -prof gc.
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MainThreadBenchmark
+{
+    // %altdetector_alts_<player>% from the PlaceholderAPI cache
+    
+    @Benchmark
+    public String placeholderRequest(MainThreadState state)
+    {
+        int player = ThreadLocalRandom.current().nextInt(state.players);
+        return state.placeholder.onRequest(null, "alts_" + state.dataset.name(player));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The cache lookup alone, without the identifier matching
+    
+    @Benchmark
+    public String getCachedAlts(MainThreadState state)
+    {
+        int player = ThreadLocalRandom.current().nextInt(state.players);
+        return state.plugin.database.getCachedAlts(state.dataset.name(player));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Tab completion of /alt with nothing typed, which lists every player, and
+    // with a prefix matching about 1 in 10 players
+    
+    @Benchmark
+    public List<String> tabCompleteAll(MainThreadState state)
+    {
+        return state.tabComplete.onTabComplete(state.sender, state.command, "alt", new String[] {""});
+    }
+    
+    @Benchmark
+    public List<String> tabCompletePrefix(MainThreadState state)
+    {
+        return state.tabComplete.onTabComplete(state.sender, state.command, "alt", new String[] {"player1"});
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Removing the color codes from the alt string before it's logged
+    
+    @Benchmark
+    public String stripColorCodes(MainThreadState state)
+    {
+        return Listeners.stripColorCodes(state.coloredAltString);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // MessageFormat formatting of the alt string. The PlaceholderAPI cache is
+    // updated too, for a player who is already in it.
+    
+    @Benchmark
+    public String formatAltString(MainThreadState state)
+    {
+        return state.plugin.database.getFormattedAltString(state.dataset.name(0),
+                                                           state.altList,
+                                                           state.joinPlayer,
+                                                           state.joinPlayerList,
+                                                           state.joinPlayerSeparator);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                       .include(MainThreadBenchmark.class.getSimpleName())
+                       .addProfiler(GCProfiler.class)
+                       .build()).run();
+    }
+
+}
@@ -0,0 +1,120 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.bobcat00.altdetector.benchmarks.UniformDataset;
+import com.bobcat00.altdetector.database.Database;
+import com.bobcat00.altdetector.database.StandalonePlatform;
+
+// The plugin as it is after startup with the PlaceholderAPI expansion enabled:
+// the player list and the alts of every player are cached. The data is in a
+// Logstore database in a temporary folder, which is held in memory, so the
+// setup doesn't need a JDBC driver.
+
+@State(Scope.Benchmark)
+public class MainThreadState
+{
+    @Param({"1000", "100000"})
+    public int players;
+    
+    File folder;
+    AltDetector plugin;
+    Placeholder placeholder;
+    TabComplete tabComplete;
+    UniformDataset dataset;
+    
+    // Console sender for tab completion, which has every permission
+    CommandSender sender;
+    Command command;
+    
+    // Formats from the default config.yml, and an alt string using color
+    // codes in all of them
+    String joinPlayer = "{0} may be an alt of ";
+    String joinPlayerList = "{0}";
+    String joinPlayerSeparator = ", ";
+    List<String> altList = Arrays.asList("Notch", "jeb_", "Dinnerbone", "Grumm");
+    String coloredAltString = "&bplayer1 &6may be an alt of &bNotch&6, &bjeb_&6, &bDinnerbone&6, &bGrumm";
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        folder = Files.createTempDirectory("altdetector-bench").toFile();
+        
+        Properties settings = new Properties();
+        settings.setProperty("database-type", "logstore");
+        settings.setProperty("placeholder-enabled", "true");
+        StandalonePlatform platform = new StandalonePlatform(folder, settings);
+        Database database = platform.openDatabase();
+        if (database == null)
+        {
+            throw new IllegalStateException("Unable to open Logstore database");
+        }
+        
+        dataset = new UniformDataset(players * 4);
+        if (!dataset.insert(database))
+        {
+            throw new IllegalStateException("Unable to insert dataset");
+        }
+        database.generatePlayerList();
+        database.generatePlayerAltList();
+        
+        plugin = Mocks.allocate(AltDetector.class);
+        plugin.database = database;
+        placeholder = new Placeholder(plugin);
+        tabComplete = new TabComplete(plugin);
+        
+        sender = Mocks.implement(CommandSender.class, (proxy, method, args) -> Mocks.defaultValue(method.getReturnType()));
+        command = new Command("alt")
+        {
+            @Override
+            public boolean execute(CommandSender sender, String label, String[] args)
+            {
+                return true;
+            }
+        };
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        plugin.database.closeDataSource();
+        try (Stream<Path> paths = Files.walk(folder.toPath()))
+        {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLogger;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+
+// A server with just enough behavior to run the plugin's listeners. The main
+// thread is a single thread running tasks at 50 ms per tick, and async tasks
+// run on a cached thread pool, as on a real server. Plugin managers and
+// messengers do nothing, and players are whatever the caller adds.
+
+public class MockServer
+{
+    static final long TICK_MILLIS = 50L;
+    
+    final ScheduledExecutorService mainThread = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "Server thread"));
+    final ThreadPoolExecutor asyncPool = (ThreadPoolExecutor) Executors.newCachedThreadPool(r -> daemon(r, "Craft Scheduler Thread"));
+    final Map<UUID, Player> onlinePlayers = new ConcurrentHashMap<UUID, Player>();
+    final Logger logger = Logger.getLogger("Minecraft");
+    final Server server;
+    
+    // Constructor. This sets the Bukkit server, so there can only be one.
+    
+    public MockServer()
+    {
+        BukkitScheduler scheduler = Mocks.implement(BukkitScheduler.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+            case "runTask":
+                mainThread.execute((Runnable) args[1]);
+                return null;
+            case "runTaskLater":
+                mainThread.schedule((Runnable) args[1], (Long) args[2] * TICK_MILLIS, TimeUnit.MILLISECONDS);
+                return null;
+            case "runTaskTimer":
+                mainThread.scheduleAtFixedRate((Runnable) args[1], (Long) args[2] * TICK_MILLIS, (Long) args[3] * TICK_MILLIS, TimeUnit.MILLISECONDS);
+                return null;
+            case "runTaskAsynchronously":
+                asyncPool.execute((Runnable) args[1]);
+                return null;
+            case "cancelTasks":
+                return null;
+            default:
+                throw new UnsupportedOperationException("BukkitScheduler." + method.getName());
+            }
+        });
+        
+        server = Mocks.implement(Server.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+            case "getScheduler":
+                return scheduler;
+            case "getLogger":
+                return logger;
+            case "getOnlinePlayers":
+                return Collections.unmodifiableCollection(onlinePlayers.values());
+            case "getPlayer":
+                return (args[0] instanceof UUID) ? onlinePlayers.get(args[0]) : null;
+            case "getName":
+                return "MockServer";
+            case "getVersion":
+            case "getBukkitVersion":
+                return "mock";
+            default:
+                if (method.getReturnType().isInterface())
+                {
+                    // Plugin manager, messenger, etc.
+                    return Mocks.implement(method.getReturnType(), (p, m, a) -> Mocks.defaultValue(m.getReturnType()));
+                }
+                return Mocks.defaultValue(method.getReturnType());
+            }
+        });
+        
+        Bukkit.setServer(server);
+    }
+    
+    private static Thread daemon(Runnable runnable, String name)
+    {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Create the plugin with a config, without enabling it. The fields
+    // JavaPlugin's constructor and onEnable would set are set here, except
+    // for the database, which the caller opens.
+    
+    public AltDetector createPlugin(File dataFolder, YamlConfiguration config) throws ReflectiveOperationException
+    {
+        AltDetector plugin = Mocks.allocate(AltDetector.class);
+        setField(plugin, "server", server);
+        setField(plugin, "dataFolder", dataFolder);
+        setField(plugin, "description", new PluginDescriptionFile("AltDetector", "mock", AltDetector.class.getName()));
+        setField(plugin, "newConfig", config);
+        setField(plugin, "logger", new PluginLogger(plugin));
+        
+        plugin.config = new Config(plugin);
+        plugin.expirationTime = plugin.config.getExpirationTime();
+        return plugin;
+    }
+    
+    private static void setField(JavaPlugin plugin, String name, Object value) throws ReflectiveOperationException
+    {
+        Field field = JavaPlugin.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(plugin, value);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add and remove players, who are seen by getOnlinePlayers and getPlayer
+    
+    public void addPlayer(Player player)
+    {
+        onlinePlayers.put(player.getUniqueId(), player);
+    }
+    
+    public void removePlayer(Player player)
+    {
+        onlinePlayers.remove(player.getUniqueId());
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns true if no async tasks are running or queued
+    
+    public boolean isAsyncIdle()
+    {
+        return (asyncPool.getActiveCount() == 0) && asyncPool.getQueue().isEmpty();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Stop the threads, letting queued main thread tasks finish
+    
+    public void shutdown() throws InterruptedException
+    {
+        mainThread.shutdown();
+        mainThread.awaitTermination(10, TimeUnit.SECONDS);
+        asyncPool.shutdown();
+        asyncPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+}
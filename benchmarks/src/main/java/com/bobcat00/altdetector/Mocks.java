@@ -0,0 +1,70 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+
+import org.objenesis.ObjenesisStd;
+
+// Helpers for running plugin classes without a server
+
+public class Mocks
+{
+    private Mocks()
+    {
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Create an instance without calling its constructor. JavaPlugin's
+    // constructor refuses to run outside the server's plugin class loader, so
+    // AltDetector is created this way and its fields are set directly.
+    
+    public static <T> T allocate(Class<T> type)
+    {
+        return new ObjenesisStd().newInstance(type);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Implement an interface with a handler. Methods the handler doesn't
+    // handle should return null, or the default value for primitive types.
+    
+    public static <T> T implement(Class<T> type, InvocationHandler handler)
+    {
+        return type.cast(Proxy.newProxyInstance(Mocks.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Default return value for a method with no behavior of its own
+    
+    public static Object defaultValue(Class<?> returnType)
+    {
+        if (returnType == boolean.class) return false;
+        if (returnType == int.class)     return 0;
+        if (returnType == long.class)    return 0L;
+        if (returnType == double.class)  return 0.0;
+        if (returnType == float.class)   return 0.0f;
+        if (returnType == short.class)   return (short) 0;
+        if (returnType == byte.class)    return (byte) 0;
+        if (returnType == char.class)    return (char) 0;
+        return null;
+    }
+
+}
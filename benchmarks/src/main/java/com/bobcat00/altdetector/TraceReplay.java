@@ -0,0 +1,120 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+// Replays a JoinTrace recorded with join-trace: true on a JoinHarness, with
+// the joins spaced as they were recorded, or speed times faster.
+//
+// Run with
+//   java -cp target/benchmarks.jar com.bobcat00.altdetector.TraceReplay trace=joins-20261017-080000.trace [setting=value ...]
+// Settings are trace, speed (default 1), max-online and folder, the data
+// folder for SQLite and Logstore. Any other setting overrides config.yml, so
+// the same trace can be replayed against each database type and setting.
+// The joins are written to the database, so replay against a copy of the
+// server's database to see how it behaves with real data.
+
+public class TraceReplay
+{
+    final JoinHarness harness;
+    final JoinTrace.Reader reader;
+    final double speed;
+    
+    // Main thread only
+    JoinTrace.Join next;
+    long traceStart;
+    
+    // Constructor
+    
+    TraceReplay(Map<String, String> settings) throws Exception
+    {
+        String trace = settings.remove("trace");
+        if (trace == null)
+        {
+            throw new IllegalArgumentException("No trace specified");
+        }
+        String speedSetting = settings.remove("speed");
+        String maxOnline = settings.remove("max-online");
+        String folder = settings.remove("folder");
+        speed = (speedSetting != null) ? Double.parseDouble(speedSetting) : 1.0;
+        if (speed <= 0.0)
+        {
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        
+        reader = new JoinTrace.Reader(new File(trace));
+        next = reader.next();
+        if (next == null)
+        {
+            reader.close();
+            throw new IllegalArgumentException("Trace " + trace + " is empty");
+        }
+        traceStart = next.time;
+        
+        YamlConfiguration config = JoinHarness.loadConfig(settings);
+        harness = new JoinHarness(new File((folder != null) ? folder : "target/replay/" + config.getString("database-type")),
+                                  config,
+                                  (maxOnline != null) ? Integer.parseInt(maxOnline) : 1000);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // One server tick - main thread. Joins up to the trace time of the end of
+    // this tick are fired.
+    
+    private boolean tick(int tick)
+    {
+        long traceNow = traceStart + (long) ((tick + 1) * MockServer.TICK_MILLIS * speed);
+        try
+        {
+            while ((next != null) && (next.time < traceNow))
+            {
+                harness.join(next.name, next.uuid, next.address);
+                next = reader.next();
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Unable to read trace: " + e.getMessage());
+            return false;
+        }
+        return next != null;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    public static void main(String[] args) throws Exception
+    {
+        TraceReplay replay = new TraceReplay(JoinHarness.parseArgs(args, "TraceReplay trace=file [setting=value ...]"));
+        try
+        {
+            System.out.println("Replaying at " + replay.speed + " times recorded speed");
+            replay.harness.report(replay.harness.run(replay::tick));
+        }
+        finally
+        {
+            replay.reader.close();
+            replay.harness.close();
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bobcat00.altdetector.database.Database.PlayerDataType;
+
+// Benchmarks of the Database methods the plugin calls, against a database
+// filled by DatabaseState. Players are picked at random for each call, so
+// the SQLite page cache and the MySQL buffer pool see a realistic spread of
+// lookups. Build with mvn -P benchmarks package, and run with:
+//
+//   java -jar benchmarks/target/benchmarks.jar DatabaseBenchmark
+//
+// Use -p rows=10000 to run one size.
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseBenchmark
+{
+    // The alt lookup done for every join
+    
+    @Benchmark
+    public List<String> getAltNames(DatabaseState state)
+    {
+        String uuid = state.dataset.uuid(ThreadLocalRandom.current().nextInt(state.dataset.players));
+        return state.database.getAltNames(uuid, uuid, state.platform.getExpirationTime());
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The lookup done by /alt <player> for a player who isn't online
+    
+    @Benchmark
+    public PlayerDataType lookupOfflinePlayer(DatabaseState state)
+    {
+        return state.database.lookupOfflinePlayer(state.dataset.name(ThreadLocalRandom.current().nextInt(state.dataset.players)));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The database writes done for every join. Half of the joins are from
+    // one of the player's addresses, updating the date, and half from a new
+    // address, adding an iptable row.
+    
+    @Benchmark
+    public void recordJoin(DatabaseState state)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int player = random.nextInt(state.dataset.players);
+        String ip = random.nextBoolean() ? state.dataset.ownIp(player, 0) : "10." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+        state.database.recordJoin(state.dataset.name(player), state.dataset.uuid(player), ip);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The purge done at startup. Nothing in the dataset is old enough to be
+    // removed, so this measures finding the expired rows and the orphaned
+    // players, and the dataset stays the same.
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int purge(DatabaseState state)
+    {
+        return state.database.purge(state.platform.getExpirationTime());
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The PlaceholderAPI cache built at startup, an alt lookup for every
+    // player
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void generatePlayerAltList(DatabaseState state)
+    {
+        state.database.generatePlayerAltList();
+    }
+
+}
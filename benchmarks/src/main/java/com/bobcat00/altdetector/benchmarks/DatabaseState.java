@@ -0,0 +1,228 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.bobcat00.altdetector.database.BenchmarkData;
+import com.bobcat00.altdetector.database.Database;
+import com.bobcat00.altdetector.database.StandalonePlatform;
+
+// A database filled with a UniformDataset of the size in rows. Each size and
+// database type has its own folder under target/benchmark-data. The dataset
+// is only generated the first time, into a pristine database, since the large
+// sizes take a while to insert. Each trial runs against a fresh copy of it,
+// so the joins written by one trial aren't seen by the next. The time the
+// dataset was generated is kept in the pristine folder, and the dates are
+// moved forward by the time since then, so they stay the same distance from
+// now and nothing expires. Logstore can't move its dates, so its dataset is
+// generated again instead.
+//
+// SQLite and Logstore are copied as files. For MySQL, run with -p type=mysql
+// and pass the config.yml settings as system properties with an altdetector.
+// prefix, for example -Daltdetector.mysql.hostname=127.0.0.1. Each size has a
+// pristine and a trial set of tables in that database, with their own table
+// prefixes, and the tables are copied on the server.
+
+@State(Scope.Benchmark)
+public class DatabaseState
+{
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+    
+    @Param({"sqlite"})
+    public String type;
+    
+    StandalonePlatform platform;
+    Database database;
+    UniformDataset dataset;
+    
+    // The dates are moved once the dataset is this old
+    private static final long SHIFT_SECONDS = 3600;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException
+    {
+        File folder = new File("target/benchmark-data/" + type + "-" + rows);
+        File trialFolder = new File(folder, "trial");
+        
+        dataset = new UniformDataset(rows);
+        Database pristine = openPristine(new File(folder, "pristine"));
+        
+        if (type.equalsIgnoreCase("mysql"))
+        {
+            platform = platform(trialFolder, "bench" + rows + "t_");
+            database = open(platform);
+            BenchmarkData.copyTables(pristine, database);
+            pristine.closeDataSource();
+        }
+        else
+        {
+            pristine.closeDataSource();
+            delete(trialFolder);
+            copy(new File(folder, "pristine"), trialFolder);
+            platform = platform(trialFolder, "");
+            database = open(platform);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        database.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Open the pristine database with its dates moved forward to now,
+    // generating the dataset if it isn't there
+    
+    private Database openPristine(File folder) throws IOException, SQLException
+    {
+        File marker = new File(folder, "generated");
+        String prefix = "bench" + rows + "p_";
+        long now = System.currentTimeMillis() / 1000L;
+        
+        if (marker.exists())
+        {
+            Database pristine = open(platform(folder, prefix));
+            long age = now - Long.parseLong(new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8).trim());
+            if (age < SHIFT_SECONDS)
+            {
+                return pristine;
+            }
+            try
+            {
+                BenchmarkData.shiftDates(pristine, age);
+                Files.write(marker.toPath(), Long.toString(now).getBytes(StandardCharsets.UTF_8));
+                return pristine;
+            }
+            catch (SQLException e)
+            {
+                pristine.closeDataSource();
+            }
+        }
+        
+        // Generate the dataset, removing any left by an interrupted run
+        
+        delete(folder);
+        folder.mkdirs();
+        Database pristine = open(platform(folder, prefix));
+        if (type.equalsIgnoreCase("mysql"))
+        {
+            BenchmarkData.clearTables(pristine);
+        }
+        if (!dataset.insert(pristine, now))
+        {
+            throw new IllegalStateException("Unable to insert dataset");
+        }
+        Files.write(marker.toPath(), Long.toString(now).getBytes(StandardCharsets.UTF_8));
+        
+        return pristine;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Platform for a database in folder, with the settings from the system
+    // properties
+    
+    private StandalonePlatform platform(File folder, String prefix)
+    {
+        folder.mkdirs();
+        
+        Properties settings = new Properties();
+        for (Map.Entry<Object, Object> entry : System.getProperties().entrySet())
+        {
+            String key = entry.getKey().toString();
+            if (key.startsWith("altdetector."))
+            {
+                settings.setProperty(key.substring("altdetector.".length()), entry.getValue().toString());
+            }
+        }
+        settings.setProperty("database-type", type);
+        settings.setProperty("mysql.prefix", prefix);
+        settings.setProperty("date-granularity-minutes", "0"); // every join writes
+        settings.setProperty("placeholder-enabled", "true");   // for generatePlayerAltList
+        
+        return new StandalonePlatform(folder, settings);
+    }
+    
+    private Database open(StandalonePlatform platform)
+    {
+        Database database = platform.openDatabase();
+        if (database == null)
+        {
+            throw new IllegalStateException("Unable to open " + type + " database");
+        }
+        return database;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Delete a folder and everything in it
+    
+    private static void delete(File folder) throws IOException
+    {
+        if (!folder.exists())
+        {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(folder.toPath()))
+        {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path path : paths)
+        {
+            Files.delete(path);
+        }
+    }
+    
+    // Copy a folder and everything in it. Folders come before their contents.
+    
+    private static void copy(File from, File to) throws IOException
+    {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(from.toPath()))
+        {
+            paths = walk.collect(Collectors.toList());
+        }
+        for (Path path : paths)
+        {
+            Files.copy(path, to.toPath().resolve(from.toPath().relativize(path)));
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.benchmarks;
+
+import java.util.Arrays;
+
+// Recorded latencies in nanoseconds, for reporting percentiles at the end of
+// a run. Every value is kept, which is fine for the few million a load test
+// records.
+
+public class Latencies
+{
+    private long[] values = new long[1024];
+    private int count = 0;
+    
+    public synchronized void record(long nanos)
+    {
+        if (count == values.length)
+        {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count++] = nanos;
+    }
+    
+    public synchronized int count()
+    {
+        return count;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Percentiles from 0 to 100, in milliseconds
+    
+    public synchronized double[] percentilesMillis(double... percentiles)
+    {
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        double[] result = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; ++i)
+        {
+            if (count > 0)
+            {
+                int index = (int) Math.ceil(percentiles[i] / 100.0 * count) - 1;
+                result[i] = sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+            }
+        }
+        return result;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // One line summary, such as "p50 1.2 ms, p99 3.4 ms, max 5.6 ms"
+    
+    public String summary()
+    {
+        double[] p = percentilesMillis(50, 90, 99, 99.9, 100);
+        return String.format("p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms", p[0], p[1], p[2], p[3], p[4]);
+    }
+
+}
@@ -0,0 +1,330 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import com.bobcat00.altdetector.database.Database;
+import com.bobcat00.altdetector.database.Database.IptableType;
+import com.bobcat00.altdetector.database.Database.PlayertableType;
+import com.bobcat00.altdetector.database.StandalonePlatform;
+
+// Dataset with the shape of a real server's data, for capacity testing. Real
+// alt graphs are nothing like UniformDataset: most players have one or two
+// addresses, a few have hundreds, and school and carrier NAT addresses are
+// shared by hundreds of accounts, which is where getAlts spends its time.
+//
+// - Addresses per player follow a Pareto distribution, capped at MAX_IPS.
+//   Players with many addresses take most of them from a pool of VPN exits.
+// - Some players are on dynamic ISPs, drawing addresses from pools that are
+//   reassigned to other players over time.
+// - Some players also use a hub address, such as a school or carrier NAT.
+//   Hub sizes follow a Pareto distribution from HUB_MIN to HUB_MAX accounts.
+// - Some players changed their name. If they haven't joined since, the old
+//   name is still recorded, and may have been taken by another player.
+// - Last seen dates are relative to expiration-time, with some players
+//   inactive long enough that their rows have expired.
+//
+// Everything is derived from the seed, so a given size is always the same.
+
+public class RealisticDataset
+{
+    static final double IPS_ALPHA = 1.3;
+    static final int MAX_IPS = 500;
+    static final int VPN_THRESHOLD = 20;
+    static final double DYNAMIC_FRACTION = 0.35;
+    static final int DYNAMIC_ISPS = 50;
+    static final double HUB_FRACTION = 0.08;
+    static final double HUB_ALPHA = 1.1;
+    static final int HUB_MIN = 20;
+    static final int HUB_MAX = 1000;
+    static final double RENAME_FRACTION = 0.05;
+    static final double CLAIM_FRACTION = 0.02;
+    
+    private static final int BATCH_SIZE = 1000;
+    
+    // Address blocks
+    private static final int STATIC_BASE  = 0x0A000000;
+    private static final int HUB_BASE     = 0x30000000;
+    private static final int DYNAMIC_BASE = 0x50000000;
+    private static final int VPN_BASE     = 0x70000000;
+    
+    final int players;
+    final int expirationDays;
+    final long seed;
+    
+    final int dynamicPoolSize;
+    final int vpnPoolSize;
+    final double[] hubWeights; // cumulative
+    
+    // Statistics from the last insert
+    long rows;
+    int duplicateNames;
+    int[] hubAccounts;
+    int[] ipsPerPlayer;
+    
+    // Constructor
+    
+    public RealisticDataset(int players, int expirationDays, long seed)
+    {
+        this.players = Math.max(1, players);
+        this.expirationDays = expirationDays;
+        this.seed = seed;
+        
+        // Each dynamic address is reused by about 3 players
+        dynamicPoolSize = Math.max(DYNAMIC_ISPS, (int) (this.players * DYNAMIC_FRACTION / 3));
+        vpnPoolSize = Math.max(100, this.players / 50);
+        
+        // Enough hubs for their expected sizes to cover the hub players
+        Random random = new Random(seed);
+        double meanHub = HUB_ALPHA * HUB_MIN / (HUB_ALPHA - 1) * (1.0 - Math.pow((double) HUB_MIN / HUB_MAX, HUB_ALPHA - 1));
+        int hubs = Math.max(1, (int) (this.players * HUB_FRACTION / meanHub));
+        hubWeights = new double[hubs];
+        double total = 0.0;
+        for (int h = 0; h < hubs; ++h)
+        {
+            total += Math.min(HUB_MAX, pareto(random, HUB_MIN, HUB_ALPHA));
+            hubWeights[h] = total;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Value at least min with a Pareto distribution
+    
+    private static double pareto(Random random, double min, double alpha)
+    {
+        return min / Math.pow(1.0 - random.nextDouble(), 1.0 / alpha);
+    }
+    
+    public String uuid(int player)
+    {
+        return new UUID(0x4EA115E1CL, player).toString();
+    }
+    
+    private static String ip(int n)
+    {
+        return ((n >>> 24) & 0xff) + "." + ((n >>> 16) & 0xff) + "." + ((n >>> 8) & 0xff) + "." + (n & 0xff);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Insert the dataset into an empty database with the bulk insert path
+    
+    public boolean insert(Database database)
+    {
+        // Players and names
+        Random random = new Random(seed);
+        List<String> staleNames = new ArrayList<String>();
+        duplicateNames = 0;
+        List<PlayertableType> playerBatch = new ArrayList<PlayertableType>(BATCH_SIZE);
+        for (int p = 0; p < players; ++p)
+        {
+            String name = "player" + p;
+            if (!staleNames.isEmpty() && (random.nextDouble() < CLAIM_FRACTION))
+            {
+                // Take the old name of a player who changed it
+                int i = random.nextInt(staleNames.size());
+                name = staleNames.get(i);
+                staleNames.set(i, staleNames.get(staleNames.size() - 1));
+                staleNames.remove(staleNames.size() - 1);
+                ++duplicateNames;
+            }
+            if (random.nextDouble() < RENAME_FRACTION)
+            {
+                if (random.nextBoolean())
+                {
+                    // Hasn't joined since, so the old name stays recorded
+                    staleNames.add(name);
+                }
+                else
+                {
+                    name = "renamed" + p;
+                }
+            }
+            
+            PlayertableType pt = database.new PlayertableType();
+            pt.uuid = uuid(p);
+            pt.name = name;
+            playerBatch.add(pt);
+            if ((playerBatch.size() == BATCH_SIZE) || (p == players - 1))
+            {
+                if (!database.addPlayertableEntries(playerBatch))
+                {
+                    return false;
+                }
+                playerBatch.clear();
+            }
+        }
+        
+        // Addresses and dates
+        random = new Random(seed + 1);
+        long now = System.currentTimeMillis() / 1000L;
+        long expiration = expirationDays * 86400L;
+        rows = 0;
+        hubAccounts = new int[hubWeights.length];
+        ipsPerPlayer = new int[players];
+        int staticNext = STATIC_BASE;
+        Set<String> ips = new HashSet<String>();
+        List<IptableType> entries = new ArrayList<IptableType>(BATCH_SIZE);
+        for (int p = 0; p < players; ++p)
+        {
+            // Last seen: 40% in the last week, 30% before expiration, 30% up
+            // to 3 times the expiration time ago
+            double activity = random.nextDouble();
+            long age;
+            if (activity < 0.4)
+            {
+                age = (long) (random.nextDouble() * 7 * 86400L);
+            }
+            else if (activity < 0.7)
+            {
+                age = (long) (random.nextDouble() * expiration);
+            }
+            else
+            {
+                age = expiration + (long) (random.nextDouble() * 2 * expiration);
+            }
+            long lastSeen = now - age;
+            long firstSeen = lastSeen - (long) (-Math.log(1.0 - random.nextDouble()) * 90 * 86400L);
+            
+            ips.clear();
+            int count = (int) Math.min(MAX_IPS, pareto(random, 1, IPS_ALPHA));
+            boolean dynamic = random.nextDouble() < DYNAMIC_FRACTION;
+            int isp = random.nextInt(DYNAMIC_ISPS);
+            int ispPool = dynamicPoolSize / DYNAMIC_ISPS + 1;
+            for (int k = 0; k < count; ++k)
+            {
+                if (k >= 3 && count > VPN_THRESHOLD)
+                {
+                    ips.add(ip(VPN_BASE + random.nextInt(vpnPoolSize)));
+                }
+                else if (dynamic)
+                {
+                    ips.add(ip(DYNAMIC_BASE + isp * ispPool + random.nextInt(ispPool)));
+                }
+                else
+                {
+                    ips.add(ip(staticNext++));
+                }
+            }
+            if (random.nextDouble() < HUB_FRACTION)
+            {
+                double r = random.nextDouble() * hubWeights[hubWeights.length - 1];
+                int h = Arrays.binarySearch(hubWeights, r);
+                h = (h < 0) ? -h - 1 : h;
+                ++hubAccounts[h];
+                ips.add(ip(HUB_BASE + h));
+            }
+            
+            boolean first = true;
+            for (String ipaddr : ips)
+            {
+                IptableType ipt = database.new IptableType();
+                ipt.ipaddr = ipaddr;
+                ipt.uuid = uuid(p);
+                ipt.unixdate = first ? lastSeen : firstSeen + (long) (random.nextDouble() * (lastSeen - firstSeen));
+                entries.add(ipt);
+                first = false;
+            }
+            rows += ips.size();
+            ipsPerPlayer[p] = ips.size();
+            
+            if ((entries.size() >= BATCH_SIZE) || (p == players - 1))
+            {
+                if (!database.addIptableEntries(entries))
+                {
+                    return false;
+                }
+                entries.clear();
+            }
+        }
+        
+        return true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Summary of the last insert
+    
+    public String summary()
+    {
+        int[] sortedIps = ipsPerPlayer.clone();
+        Arrays.sort(sortedIps);
+        int[] sortedHubs = hubAccounts.clone();
+        Arrays.sort(sortedHubs);
+        return players + " players, " + rows + " iptable rows, " + duplicateNames + " reused names\n" +
+               "Addresses per player: median " + sortedIps[players / 2] + ", p99 " + sortedIps[(int) (players * 0.99)] + ", max " + sortedIps[players - 1] + "\n" +
+               "Hub addresses: " + sortedHubs.length + ", median " + sortedHubs[sortedHubs.length / 2] + " accounts, max " + sortedHubs[sortedHubs.length - 1];
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Fill a database. Settings are config.yml names, plus players, seed and
+    // folder, the data folder for SQLite, for example
+    //   java -cp target/benchmarks.jar com.bobcat00.altdetector.benchmarks.RealisticDataset players=1000000
+    //   java -cp target/benchmarks.jar com.bobcat00.altdetector.benchmarks.RealisticDataset players=1000000 database-type=mysql mysql.hostname=127.0.0.1
+    // The database should be empty.
+    
+    public static void main(String[] args)
+    {
+        Properties settings = new Properties();
+        for (String arg : args)
+        {
+            int equals = arg.indexOf('=');
+            if (equals < 1)
+            {
+                System.err.println("Usage: RealisticDataset [setting=value ...]");
+                System.exit(1);
+            }
+            settings.setProperty(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        int players = Integer.parseInt(settings.getProperty("players", "100000"));
+        long seed = Long.parseLong(settings.getProperty("seed", "1"));
+        File folder = new File(settings.getProperty("folder", "target/realistic-" + players));
+        folder.mkdirs();
+        
+        StandalonePlatform platform = new StandalonePlatform(folder, settings);
+        Database database = platform.openDatabase();
+        if (database == null)
+        {
+            System.err.println("Unable to open " + platform.getDatabaseType() + " database");
+            System.exit(1);
+        }
+        
+        RealisticDataset dataset = new RealisticDataset(players, platform.getExpirationTime(), seed);
+        long start = System.nanoTime();
+        boolean success = dataset.insert(database);
+        database.closeDataSource();
+        if (!success)
+        {
+            System.err.println("Insert failed");
+            System.exit(1);
+        }
+        System.out.println(dataset.summary());
+        System.out.println(String.format("Inserted in %.1f s", (System.nanoTime() - start) / 1e9));
+    }
+
+}
@@ -0,0 +1,139 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import com.bobcat00.altdetector.database.Database;
+import com.bobcat00.altdetector.database.Database.IptableType;
+import com.bobcat00.altdetector.database.Database.PlayertableType;
+
+// Simple dataset with a fixed number of iptable rows. Each player has three
+// addresses of their own and one address shared with about 20 other players.
+// Dates are spread over the 50 days before the insert, or before a given
+// time. Players, names and addresses are derived from their index, so
+// benchmarks can pick them without reading the database.
+
+public class UniformDataset
+{
+    static final int IPS_PER_PLAYER = 4;
+    static final int PLAYERS_PER_SHARED_IP = 20;
+    
+    private static final int BATCH_SIZE = 1000;
+    
+    final int players;
+    
+    // Constructor
+    
+    public UniformDataset(int rows)
+    {
+        this.players = Math.max(1, rows / IPS_PER_PLAYER);
+    }
+    
+    public int getPlayers()
+    {
+        return players;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Player and address for an index
+    
+    public String uuid(int player)
+    {
+        return new UUID(0xA17DE7EC70L, player).toString();
+    }
+    
+    public String name(int player)
+    {
+        return "player" + player;
+    }
+    
+    public String ownIp(int player, int k)
+    {
+        return ip(player * (IPS_PER_PLAYER - 1) + k);
+    }
+    
+    public String sharedIp(int player)
+    {
+        return ip(0x40000000 + player / PLAYERS_PER_SHARED_IP);
+    }
+    
+    private static String ip(int n)
+    {
+        return ((n >>> 24) & 0xff) + "." + ((n >>> 16) & 0xff) + "." + ((n >>> 8) & 0xff) + "." + (n & 0xff);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Insert the dataset into an empty database with the bulk insert path
+    
+    public boolean insert(Database database)
+    {
+        return insert(database, System.currentTimeMillis() / 1000L);
+    }
+    
+    // Insert the dataset with dates in the 50 days before now, in Unix seconds
+    
+    public boolean insert(Database database, long now)
+    {
+        List<PlayertableType> players = new ArrayList<PlayertableType>(BATCH_SIZE);
+        for (int p = 0; p < this.players; ++p)
+        {
+            PlayertableType pt = database.new PlayertableType();
+            pt.uuid = uuid(p);
+            pt.name = name(p);
+            players.add(pt);
+            if ((players.size() == BATCH_SIZE) || (p == this.players - 1))
+            {
+                if (!database.addPlayertableEntries(players))
+                {
+                    return false;
+                }
+                players.clear();
+            }
+        }
+        
+        Random random = new Random(1);
+        List<IptableType> entries = new ArrayList<IptableType>(BATCH_SIZE);
+        for (int p = 0; p < this.players; ++p)
+        {
+            for (int k = 0; k < IPS_PER_PLAYER; ++k)
+            {
+                IptableType ipt = database.new IptableType();
+                ipt.ipaddr = (k < IPS_PER_PLAYER - 1) ? ownIp(p, k) : sharedIp(p);
+                ipt.uuid = uuid(p);
+                ipt.unixdate = now - random.nextInt(50 * 86400);
+                entries.add(ipt);
+            }
+            if ((entries.size() >= BATCH_SIZE) || (p == this.players - 1))
+            {
+                if (!database.addIptableEntries(entries))
+                {
+                    return false;
+                }
+                entries.clear();
+            }
+        }
+        
+        return true;
+    }
+
+}
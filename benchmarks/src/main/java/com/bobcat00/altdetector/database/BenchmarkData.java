@@ -0,0 +1,91 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Bulk changes to benchmark datasets which the plugin never makes, so they
+// have no Database methods. This is in the database package to reach the
+// connections and the dialect. Each method throws an SQLException for a
+// database without SQL, such as Logstore.
+
+public class BenchmarkData
+{
+    // Delete every row of playertable and iptable
+    
+    public static void clearTables(Database database) throws SQLException
+    {
+        SqlDialect dialect = dialect(database);
+        try (Connection conn = database.getConnection();
+             Statement stmt = conn.createStatement())
+        {
+            stmt.executeUpdate(dialect.sql("DELETE FROM {prefix}iptable;"));
+            stmt.executeUpdate(dialect.sql("DELETE FROM {prefix}playertable;"));
+        }
+        database.generatePlayerList();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Replace the tables of one database with a copy of another's, keeping the
+    // ids. Both must be in the same MySQL database, with different prefixes.
+    
+    public static void copyTables(Database from, Database to) throws SQLException
+    {
+        clearTables(to);
+        SqlDialect dialect = dialect(to);
+        try (Connection conn = to.getConnection();
+             Statement stmt = conn.createStatement())
+        {
+            stmt.executeUpdate(dialect.sql("INSERT INTO {prefix}playertable SELECT * FROM ") + dialect(from).sql("{prefix}playertable;"));
+            stmt.executeUpdate(dialect.sql("INSERT INTO {prefix}iptable SELECT * FROM ") + dialect(from).sql("{prefix}iptable;"));
+        }
+        to.generatePlayerList();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Move every iptable date forward by seconds. The date is converted to
+    // Unix seconds and back with the dialect's own functions.
+    
+    public static void shiftDates(Database database, long seconds) throws SQLException
+    {
+        SqlDialect dialect = dialect(database);
+        String shifted = dialect.fromUnixTime().replace("?", "(" + dialect.toUnixTime("date") + " + ?)");
+        try (Connection conn = database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.sql("UPDATE {prefix}iptable SET date = " + shifted + ";")))
+        {
+            stmt.setLong(1, seconds);
+            stmt.executeUpdate();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    private static SqlDialect dialect(Database database) throws SQLException
+    {
+        if (database.dialect == null)
+        {
+            throw new SQLException(database.toString() + " has no SQL dialect");
+        }
+        return database.dialect;
+    }
+
+}
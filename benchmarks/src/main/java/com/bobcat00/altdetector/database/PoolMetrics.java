@@ -0,0 +1,69 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bobcat00.altdetector.benchmarks.Latencies;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+// Records how long threads wait for a connection from a database's HikariCP
+// pool. This is in the database package to reach the data source.
+
+public class PoolMetrics implements MetricsTrackerFactory
+{
+    public final Latencies waits = new Latencies();
+    public final AtomicLong timeouts = new AtomicLong();
+    
+    // Attach to an initialized database. Returns null if it has no pool, as
+    // with Logstore.
+    
+    public static PoolMetrics attach(Database database)
+    {
+        if (database.dataSource == null)
+        {
+            return null;
+        }
+        PoolMetrics metrics = new PoolMetrics();
+        database.dataSource.setMetricsTrackerFactory(metrics);
+        return metrics;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats)
+    {
+        return new IMetricsTracker()
+        {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos)
+            {
+                waits.record(elapsedAcquiredNanos);
+            }
+            
+            @Override
+            public void recordConnectionTimeout()
+            {
+                timeouts.incrementAndGet();
+            }
+        };
+    }
+
+}
@@ -16,28 +16,48 @@
 
 package com.bobcat00.altdetector;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
 
 import org.bstats.bukkit.Metrics;
 import org.bstats.charts.SimplePie;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.scheduler.BukkitWorker;
 
 import com.bobcat00.altdetector.Config.ConvertFromType;
+import com.bobcat00.altdetector.database.ConvertSql;
 import com.bobcat00.altdetector.database.Database;
+import com.bobcat00.altdetector.database.DatabaseConfig;
+import com.bobcat00.altdetector.database.Logstore;
 import com.bobcat00.altdetector.database.Mysql;
+import com.bobcat00.altdetector.database.OffHeapAltGraph;
+import com.bobcat00.altdetector.database.Platform;
 import com.bobcat00.altdetector.database.Sqlite;
 
-public class AltDetector extends JavaPlugin
+public class AltDetector extends JavaPlugin implements Platform
 {
     public int expirationTime = 60;
     public Config config;
     Database database;
     Listeners listeners;
+    JoinTrace joinTrace;
+    private BukkitTask joinTraceTask = null;
+    private BukkitTask spoolTask = null;
+    private BukkitTask changelogTask = null;
     boolean superVanish = false;
     public DiscordWebhook discordWebhook;
     public boolean placeholderEnabled = false;
+    private boolean databaseInitialized = false;
+    private boolean indexesLoaded = false;
+    
+    private static final String INDEX_FILE_NAME = "indexes.dat";
+    private static final String SPOOL_FILE_NAME = "spool.log";
+    private static final String TRACE_FOLDER_NAME = "traces";
     
     @Override
     public void onEnable()
@@ -54,17 +74,11 @@ public class AltDetector extends JavaPlugin
         
         // Database
         
-        if (config.getDatabaseType().equalsIgnoreCase("mysql"))
-        {
-            database = new Mysql(this, config.getSqlDebug(), config.getMysqlPrefix());
-        }
-        else
-        {
-            database = new Sqlite(this, config.getSqlDebug(), ""); // no prefix for SQLite
-        }
+        database = Database.create(this, config.getDatabaseType(), config.getSqlDebug(), config.getMysqlPrefix());
         
         // Initialize database
         boolean initSuccessful = database.initialize();
+        databaseInitialized = initSuccessful;
         
         if (initSuccessful)
         {
@@ -82,6 +96,7 @@ public class AltDetector extends JavaPlugin
             case YML:
             case SQLITE:
             case MYSQL:
+            case LOGSTORE:
                 // Convert database
                 convertDb(convertFrom);
                 break;
@@ -91,13 +106,83 @@ public class AltDetector extends JavaPlugin
                 break;
             }
             
+            // Spool joins to file while the database is unavailable, and
+            // write them once it's back
+            
+            if (database.enableSpool(new File(getDataFolder(), SPOOL_FILE_NAME)))
+            {
+                spoolTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        database.processSpool();
+                    }
+                }, 20L, 20L); // Every second
+            }
+            
             // Database purge
             
             int entriesRemoved = database.purge(expirationTime);
             getLogger().info(entriesRemoved + " record" + (entriesRemoved == 1 ? "" : "s") + " removed, expiration time " + expirationTime + " days.");
             
-            // Generate player list
-            database.generatePlayerList();
+            // Off-heap alt graph
+            
+            boolean altGraphEnabled = false;
+            if (config.getAltGraph().equalsIgnoreCase("offheap"))
+            {
+                altGraphEnabled = database.buildAltGraph(new OffHeapAltGraph());
+                if (altGraphEnabled)
+                {
+                    getLogger().info("Off-heap alt graph enabled.");
+                }
+                else
+                {
+                    getLogger().warning("Unable to build off-heap alt graph, using SQL queries.");
+                }
+            }
+            
+            // Cache of SQL alt lookups, not needed with the alt graph
+            
+            if (!altGraphEnabled && (config.getAltCacheSeconds() > 0))
+            {
+                database.enableAltResultCache(config.getAltCacheSeconds());
+            }
+            
+            // Read the changes made by other servers sharing the database
+            
+            if (config.getMysqlChangelogSeconds() > 0)
+            {
+                if (database.enableChangelog())
+                {
+                    long ticks = config.getMysqlChangelogSeconds() * 20L;
+                    changelogTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            database.pollChangelog();
+                        }
+                    }, ticks, ticks);
+                }
+                else
+                {
+                    getLogger().warning("Changelog requires MySQL, disabled.");
+                }
+            }
+            
+            // Load the player list saved when the server stopped, or generate
+            // it if that is out of date
+            boolean wantAltList = config.isPlaceholderEnabled() && (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null);
+            indexesLoaded = database.loadIndexes(new File(getDataFolder(), INDEX_FILE_NAME), wantAltList);
+            if (indexesLoaded)
+            {
+                getLogger().info("Loaded saved player list.");
+            }
+            else
+            {
+                database.generatePlayerList();
+            }
         }
         else
         {
@@ -105,9 +190,42 @@ public class AltDetector extends JavaPlugin
             getLogger().warning("Initialization of " + database.toString() + " database failed.");
         }
         
+        // Join trace, a new file each start
+        
+        if (config.isJoinTraceEnabled())
+        {
+            String fileName = "joins-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".trace";
+            File traceFile = new File(new File(getDataFolder(), TRACE_FOLDER_NAME), fileName);
+            try
+            {
+                joinTrace = new JoinTrace(traceFile);
+                joinTraceTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            joinTrace.flush();
+                        }
+                        catch (IOException e)
+                        {
+                            getLogger().warning("Unable to write join trace: " + e.getMessage());
+                        }
+                    }
+                }, 20L, 20L); // Every second
+                getLogger().info("Recording joins to " + TRACE_FOLDER_NAME + "/" + fileName + ".");
+            }
+            catch (IOException e)
+            {
+                getLogger().warning("Unable to create join trace: " + e.getMessage());
+            }
+        }
+        
         // Listeners
         
         listeners = new Listeners(this);
+        new BannedAlts(this);
         
         // Commands
         
@@ -141,8 +259,12 @@ public class AltDetector extends JavaPlugin
         {
             placeholderEnabled = true;
             new Placeholder(this).register();
-            // Generate player alt list for PlaceholderAPI expansions
-            database.generatePlayerAltList();
+            // Generate player alt list for PlaceholderAPI expansions, unless it
+            // was loaded with the player list
+            if (!indexesLoaded)
+            {
+                database.generatePlayerAltList();
+            }
             getLogger().info("PlaceholderAPI integration enabled.");
         }
         
@@ -176,6 +298,25 @@ public class AltDetector extends JavaPlugin
     
     // -------------------------------------------------------------------------
     
+    // Platform used by the database
+    
+    public DatabaseConfig getDatabaseConfig()
+    {
+        return config;
+    }
+    
+    public int getExpirationTime()
+    {
+        return expirationTime;
+    }
+    
+    public boolean isPlaceholderEnabled()
+    {
+        return placeholderEnabled;
+    }
+    
+    // -------------------------------------------------------------------------
+    
     // Convert database from 'convertFrom' to the database-type type specified
     // in the config file
     
@@ -190,13 +331,17 @@ public class AltDetector extends JavaPlugin
             ConvertYaml convertYml = new ConvertYaml(this);
             conversionSuccessful = convertYml.convert();
         }
-        else if (convertFrom == ConvertFromType.SQLITE || convertFrom == ConvertFromType.MYSQL)
+        else if (convertFrom == ConvertFromType.SQLITE || convertFrom == ConvertFromType.MYSQL || convertFrom == ConvertFromType.LOGSTORE)
         {
             Database oldDb = null;
             if (convertFrom == ConvertFromType.MYSQL)
             {
                 oldDb = new Mysql(this, config.getSqlDebug(), config.getMysqlPrefix());
             }
+            else if (convertFrom == ConvertFromType.LOGSTORE)
+            {
+                oldDb = new Logstore(this, config.getSqlDebug(), "");
+            }
             else
             {
                 oldDb = new Sqlite(this, config.getSqlDebug(), ""); // no prefix for SQLite
@@ -243,6 +388,17 @@ public class AltDetector extends JavaPlugin
     @Override
     public void onDisable()
     {
+        // Stop the timers, so none of them starts after the database and
+        // join trace are closed. A run already in progress is waited for
+        // below.
+        for (BukkitTask task : new BukkitTask[] {joinTraceTask, spoolTask, changelogTask})
+        {
+            if (task != null)
+            {
+                task.cancel();
+            }
+        }
+
         // Wait up to 5 seconds for our async tasks to complete
         for (int i=0; i<50; ++i)
         {
@@ -272,9 +428,25 @@ public class AltDetector extends JavaPlugin
             }
         }
 
-        // Close database
+        // Save the player list for the next start, then close database
 
+        if (databaseInitialized)
+        {
+            database.saveIndexes(new File(getDataFolder(), INDEX_FILE_NAME), placeholderEnabled);
+        }
         database.closeDataSource();
+
+        if (joinTrace != null)
+        {
+            try
+            {
+                joinTrace.close();
+            }
+            catch (IOException e)
+            {
+                getLogger().warning("Unable to write join trace: " + e.getMessage());
+            }
+        }
     }
 
 }
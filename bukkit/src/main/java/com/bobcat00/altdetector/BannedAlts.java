@@ -0,0 +1,187 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+
+import com.bobcat00.altdetector.Config.BannedAltPolicy;
+
+// Checks connecting players for banned alts before they join. The UUIDs of
+// banned players are copied from Bukkit's ban list once a minute on the main
+// thread, so the check itself only needs the alt lookup. The lookup is the
+// one shared with prelogin mode, and doesn't record the join. It must finish
+// within banned-alt-timeout-ms, otherwise the player is allowed in, so a slow
+// database never holds up logins.
+//
+// Permissions aren't available before the player joins, so exempt players are
+// checked like any other.
+
+public class BannedAlts implements Listener
+{
+    private final AltDetector plugin;
+    private final BannedAltPolicy policy;
+    private final long timeoutMs;
+    
+    // UUIDs of banned players
+    private volatile Set<String> bannedUuids = Collections.emptySet();
+    
+    // Constructor
+    
+    public BannedAlts(AltDetector plugin)
+    {
+        this.plugin = plugin;
+        this.policy = plugin.config.getBannedAltPolicy();
+        this.timeoutMs = plugin.config.getBannedAltTimeoutMs();
+        
+        if (policy != BannedAltPolicy.NONE)
+        {
+            // Refresh the banned UUIDs now and once a minute
+            Bukkit.getScheduler().runTaskTimer(plugin, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    refresh();
+                }
+            }, 0L, 1200L);
+            
+            plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Copy the UUIDs of banned players from Bukkit's ban list. This must be
+    // called from the main thread.
+    
+    private void refresh()
+    {
+        Set<String> uuids = new HashSet<String>();
+        for (OfflinePlayer player : Bukkit.getBannedPlayers())
+        {
+            uuids.add(player.getUniqueId().toString());
+        }
+        bannedUuids = uuids;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Check a connecting player. This runs at HIGH priority so it can deny the
+    // login, and so it runs after plugins which deny logins for other reasons.
+    // The lookup includes the address the player is connecting from, so a new
+    // account on the address of a banned player is found.
+    
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onAsyncPlayerPreLogin(final AsyncPlayerPreLoginEvent event)
+    {
+        if ((event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) || bannedUuids.isEmpty())
+        {
+            return;
+        }
+        
+        final String name = event.getName();
+        
+        // The lookup runs on an async task, so the wait can be limited
+        
+        Map<String, String> alts;
+        try
+        {
+            alts = plugin.listeners.lookupAtPreLogin(event).get(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            plugin.getLogger().warning("Banned alt check for " + name + " took longer than " + timeoutMs + " ms, allowing login.");
+            return;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        catch (ExecutionException e)
+        {
+            plugin.getLogger().warning("Banned alt check for " + name + " failed, allowing login: " + e.getCause());
+            return;
+        }
+        
+        // Find the banned alts
+        
+        Set<String> banned = bannedUuids;
+        List<String> bannedAlts = new ArrayList<String>();
+        for (Map.Entry<String, String> alt : alts.entrySet())
+        {
+            if (banned.contains(alt.getKey()))
+            {
+                bannedAlts.add(alt.getValue());
+            }
+        }
+        if (bannedAlts.isEmpty())
+        {
+            return;
+        }
+        
+        String altNames = String.join(", ", bannedAlts);
+        
+        if (policy == BannedAltPolicy.DENY)
+        {
+            plugin.getLogger().info("Denied login of " + name + ", banned alts: " + altNames);
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED,
+                           ChatColor.translateAlternateColorCodes('&', MessageFormat.format(plugin.config.getBannedAltDenyMessage(), name, altNames)));
+        }
+        else
+        {
+            final String flagString = MessageFormat.format(plugin.config.getBannedAltFlag(), name, altNames);
+            
+            // Go to the main thread to notify players
+            Bukkit.getScheduler().runTask(plugin, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    plugin.getLogger().info(Listeners.stripColorCodes(flagString));
+                    String notifyString = ChatColor.translateAlternateColorCodes('&', plugin.config.getJoinPlayerPrefix() + flagString);
+                    for (Player p : plugin.getServer().getOnlinePlayers())
+                    {
+                        if (p.hasPermission("altdetector.notify"))
+                        {
+                            p.sendMessage(notifyString);
+                        }
+                    }
+                }
+            });
+        }
+    }
+    
+}
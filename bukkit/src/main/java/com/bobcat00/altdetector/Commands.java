@@ -16,6 +16,8 @@
 
 package com.bobcat00.altdetector;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -31,6 +33,7 @@ import org.bukkit.entity.Player;
 import org.bukkit.metadata.MetadataValue;
 
 import com.bobcat00.altdetector.database.Database.PlayerDataType;
+import com.bobcat00.altdetector.database.Snapshot;
 
 import de.myzelyam.api.vanish.VanishAPI;
 
@@ -66,6 +69,18 @@ public class Commands implements CommandExecutor
                 return true;
             }
             
+            // Snapshot export or import
+            if (args.length >= 1 && args[0].equalsIgnoreCase("snapshot"))
+            {
+                if (args.length == 1)
+                {
+                    // Bukkit sends the usage from plugin.yml
+                    return false;
+                }
+                handleSnapshot(sender, args);
+                return true;
+            }
+            
             List<String> playerList = new ArrayList<String>();
             
             switch (args.length)
@@ -281,6 +296,76 @@ public class Commands implements CommandExecutor
     
     // -------------------------------------------------------------------------
     
+    // Export the database to, or import it from, a snapshot file in the plugin
+    // folder. The file work is done in an async thread and the result is sent
+    // to the command sender on the main thread.
+    //
+    // alt snapshot export|import [file]
+    
+    private void handleSnapshot(final CommandSender sender, final String[] args)
+    {
+        if (sender instanceof Player && !sender.hasPermission("altdetector.alt.snapshot"))
+        {
+            // You do not have permission for this command
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', plugin.config.getAltCmdNoPerm()));
+            return;
+        }
+        
+        final boolean export = args[1].equalsIgnoreCase("export");
+        if ((!export && !args[1].equalsIgnoreCase("import")) || args.length > 3)
+        {
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', plugin.config.getAltCmdParamError()));
+            return;
+        }
+        
+        // Only plain file names in the plugin folder are allowed
+        final String fileName = (args.length == 3) ? args[2] : "snapshot.bin";
+        if (fileName.contains("/") || fileName.contains("\\") || fileName.startsWith("."))
+        {
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', plugin.config.getAltCmdParamError()));
+            return;
+        }
+        final File file = new File(plugin.getDataFolder(), fileName);
+        
+        final String snapshotCmdExported = plugin.config.getSnapshotCmdExported();
+        final String snapshotCmdImported = plugin.config.getSnapshotCmdImported();
+        final String snapshotCmdFailed   = plugin.config.getSnapshotCmdFailed();
+        
+        // Go to async thread
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Snapshot snapshot = new Snapshot(plugin.database);
+                try
+                {
+                    if (export)
+                    {
+                        snapshot.export(file);
+                        sendMessageSync(sender, MessageFormat.format(snapshotCmdExported, snapshot.getPlayerCount(), snapshot.getRecordCount(), fileName));
+                    }
+                    else
+                    {
+                        snapshot.load(file);
+                        if (plugin.placeholderEnabled)
+                        {
+                            plugin.database.generatePlayerAltList();
+                        }
+                        sendMessageSync(sender, MessageFormat.format(snapshotCmdImported, snapshot.getPlayerCount(), snapshot.getRecordCount(), fileName));
+                    }
+                }
+                catch (IOException | IllegalArgumentException e)
+                {
+                    plugin.getLogger().warning("Snapshot " + (export ? "export to " : "import from ") + fileName + " failed: " + e.getMessage());
+                    sendMessageSync(sender, MessageFormat.format(snapshotCmdFailed, args[1].toLowerCase(), e.getMessage()));
+                }
+            }
+        });
+    }
+    
+    // -------------------------------------------------------------------------
+    
     // Switch to the main thread and send a message
     
     private void sendMessageSync(final CommandSender sender, final String message)
@@ -22,7 +22,9 @@ import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 
-public class Config
+import com.bobcat00.altdetector.database.DatabaseConfig;
+
+public class Config implements DatabaseConfig
 {
     private AltDetector plugin;
     
@@ -76,12 +78,43 @@ public class Config
         return plugin.getConfig().getString("mysql.jdbcurl-properties");
     }
     
+    public String getMysqlReplicaHostname()
+    {
+        return plugin.getConfig().getString("mysql.replica-hostname");
+    }
+    
+    public int getMysqlReplicaPort()
+    {
+        return plugin.getConfig().getInt("mysql.replica-port");
+    }
+    
+    public int getMysqlReplicaPinSeconds()
+    {
+        return plugin.getConfig().getInt("mysql.replica-pin-seconds");
+    }
+    
+    public int getMysqlChangelogSeconds()
+    {
+        return plugin.getConfig().getInt("mysql.changelog-seconds");
+    }
+    
+    public String getMysqlRealm()
+    {
+        return plugin.getConfig().getString("mysql.realm");
+    }
+    
+    public boolean isMysqlNetworkScope()
+    {
+        return plugin.getConfig().getString("mysql.scope").equalsIgnoreCase("network");
+    }
+    
     enum ConvertFromType
     {
         NONE,
         YML,
         SQLITE,
         MYSQL,
+        LOGSTORE,
         ERROR
     }
     
@@ -104,6 +137,10 @@ public class Config
         {
             return ConvertFromType.MYSQL;
         }
+        if (cf.equalsIgnoreCase("logstore"))
+        {
+            return ConvertFromType.LOGSTORE;
+        }
         return ConvertFromType.ERROR;
     }
     
@@ -112,6 +149,72 @@ public class Config
         return plugin.getConfig().getBoolean("sql-debug");
     }
     
+    public String getAltGraph()
+    {
+        return plugin.getConfig().getString("alt-graph");
+    }
+    
+    public int getAltCacheSeconds()
+    {
+        return plugin.getConfig().getInt("alt-cache-seconds");
+    }
+    
+    enum BannedAltPolicy
+    {
+        NONE,
+        FLAG,
+        DENY
+    }
+    
+    public BannedAltPolicy getBannedAltPolicy()
+    {
+        String policy = plugin.getConfig().getString("banned-alt-policy");
+        if (policy.equalsIgnoreCase("flag"))
+        {
+            return BannedAltPolicy.FLAG;
+        }
+        if (policy.equalsIgnoreCase("deny"))
+        {
+            return BannedAltPolicy.DENY;
+        }
+        return BannedAltPolicy.NONE;
+    }
+    
+    public long getBannedAltTimeoutMs()
+    {
+        return plugin.getConfig().getLong("banned-alt-timeout-ms");
+    }
+    
+    public String getBannedAltDenyMessage()
+    {
+        return plugin.getConfig().getString("banned-alt-deny-message");
+    }
+    
+    public String getBannedAltFlag()
+    {
+        return plugin.getConfig().getString("banned-alt-flag");
+    }
+    
+    public boolean isPreLoginMode()
+    {
+        return plugin.getConfig().getString("join-mode").equalsIgnoreCase("prelogin");
+    }
+    
+    public boolean isProxyMode()
+    {
+        return plugin.getConfig().getString("join-mode").equalsIgnoreCase("proxy");
+    }
+    
+    public int getDateGranularityMinutes()
+    {
+        return plugin.getConfig().getInt("date-granularity-minutes");
+    }
+    
+    public boolean isJoinTraceEnabled()
+    {
+        return plugin.getConfig().getBoolean("join-trace");
+    }
+    
     public String getJoinPlayerPrefix()
     {
         return plugin.getConfig().getString("join-player-prefix");
@@ -182,6 +285,21 @@ public class Config
         return plugin.getConfig().getString("delcmd-removedplural");
     }
     
+    public String getSnapshotCmdExported()
+    {
+        return plugin.getConfig().getString("snapshotcmd-exported");
+    }
+    
+    public String getSnapshotCmdImported()
+    {
+        return plugin.getConfig().getString("snapshotcmd-imported");
+    }
+    
+    public String getSnapshotCmdFailed()
+    {
+        return plugin.getConfig().getString("snapshotcmd-failed");
+    }
+    
     public boolean isPlaceholderEnabled()
     {
         return plugin.getConfig().getBoolean("placeholder-enabled");
@@ -258,6 +376,24 @@ public class Config
             plugin.getConfig().set("mysql.jdbcurl-properties", "");
         }
         
+        if (!contains("mysql.replica-hostname", true))
+        {
+            plugin.getConfig().set("mysql.replica-hostname",    "");
+            plugin.getConfig().set("mysql.replica-port",        3306);
+            plugin.getConfig().set("mysql.replica-pin-seconds", 5);
+        }
+        
+        if (!contains("mysql.changelog-seconds", true))
+        {
+            plugin.getConfig().set("mysql.changelog-seconds", 0);
+        }
+        
+        if (!contains("mysql.realm", true))
+        {
+            plugin.getConfig().set("mysql.realm", "");
+            plugin.getConfig().set("mysql.scope", "realm");
+        }
+        
         // Set to yml if not found. This indicates an old version is to be converted.
         if (!contains("convert-from", true))
         {
@@ -269,6 +405,51 @@ public class Config
                 plugin.getConfig().set("sql-debug", false);
         }
         
+        if (!contains("alt-graph", true))
+        {
+                plugin.getConfig().set("alt-graph", "sql");
+        }
+        
+        if (!contains("alt-cache-seconds", true))
+        {
+                plugin.getConfig().set("alt-cache-seconds", 0);
+        }
+        
+        if (!contains("date-granularity-minutes", true))
+        {
+                plugin.getConfig().set("date-granularity-minutes", 60);
+        }
+        
+        if (!contains("join-trace", true))
+        {
+            plugin.getConfig().set("join-trace", false);
+        }
+        
+        if (!contains("join-mode", true))
+        {
+            plugin.getConfig().set("join-mode", "join");
+        }
+        
+        if (!contains("banned-alt-policy", true))
+        {
+            plugin.getConfig().set("banned-alt-policy", "none");
+        }
+        
+        if (!contains("banned-alt-timeout-ms", true))
+        {
+            plugin.getConfig().set("banned-alt-timeout-ms", 250);
+        }
+        
+        if (!contains("banned-alt-deny-message", true))
+        {
+            plugin.getConfig().set("banned-alt-deny-message", "&4You may not join while your alt {1} is banned");
+        }
+        
+        if (!contains("banned-alt-flag", true))
+        {
+            plugin.getConfig().set("banned-alt-flag", "&c{0}&6 has banned alts: &c{1}");
+        }
+        
         if (!contains("join-player-prefix", true))
         {
             plugin.getConfig().set("join-player-prefix", "&b[AltDetector] ");
@@ -339,6 +520,21 @@ public class Config
             plugin.getConfig().set("delcmd-removedplural", "&6{0} records removed");
         }
         
+        if (!contains("snapshotcmd-exported", true))
+        {
+            plugin.getConfig().set("snapshotcmd-exported", "&6{0} players and {1} records exported to {2}");
+        }
+        
+        if (!contains("snapshotcmd-imported", true))
+        {
+            plugin.getConfig().set("snapshotcmd-imported", "&6{0} players and {1} records imported from {2}");
+        }
+        
+        if (!contains("snapshotcmd-failed", true))
+        {
+            plugin.getConfig().set("snapshotcmd-failed", "&4Snapshot {0} failed: {1}");
+        }
+        
         if (!contains("placeholder-enabled", true))
         {
                 plugin.getConfig().set("placeholder-enabled", true);
@@ -380,7 +576,7 @@ public class Config
             writer.write("expiration-time: " + plugin.getConfig().getLong("expiration-time") + "\n");
             writer.write("\n");
             
-            writer.write("# Database type sqlite, mysql"                                                            + "\n");
+            writer.write("# Database type sqlite, mysql, logstore"                                                    + "\n");
             writer.write("database-type: "         + plugin.getConfig().getString("database-type")                  + "\n");
             writer.write("mysql:"                                                                                   + "\n");
             writer.write("  hostname: "            + plugin.getConfig().getString("mysql.hostname")                 + "\n");
@@ -390,12 +586,48 @@ public class Config
             writer.write("  prefix: "              + plugin.getConfig().getString("mysql.prefix")                   + "\n");
             writer.write("  port: "                + plugin.getConfig().getInt   ("mysql.port")                     + "\n");
             writer.write("  jdbcurl-properties: '" + plugin.getConfig().getString("mysql.jdbcurl-properties") + "'" + "\n");
+            writer.write("  # Optional read replica, blank for none. Reads for a player go to the primary"               + "\n");
+            writer.write("  # for pin-seconds after a write for that player, to allow for replication lag."          + "\n");
+            writer.write("  replica-hostname: '"   + plugin.getConfig().getString("mysql.replica-hostname")   + "'" + "\n");
+            writer.write("  replica-port: "        + plugin.getConfig().getInt   ("mysql.replica-port")             + "\n");
+            writer.write("  replica-pin-seconds: " + plugin.getConfig().getInt   ("mysql.replica-pin-seconds")      + "\n");
+            writer.write("  # Seconds between reads of the changes made by other servers sharing the"            + "\n");
+            writer.write("  # database, to keep the caches up to date. 0 disables the changelog table."       + "\n");
+            writer.write("  changelog-seconds: "   + plugin.getConfig().getInt   ("mysql.changelog-seconds")        + "\n");
+            writer.write("  # Optional realm, blank for none, for servers sharing one set of tables. Each"        + "\n");
+            writer.write("  # entry records the realm it was written in. Scope realm looks up alts and purges"   + "\n");
+            writer.write("  # entries in this realm only, network uses every realm."                             + "\n");
+            writer.write("  realm: '"              + plugin.getConfig().getString("mysql.realm")              + "'" + "\n");
+            writer.write("  scope: "               + plugin.getConfig().getString("mysql.scope")              + "\n");
             writer.write("\n");
             
-            writer.write("# Convert from none, yml, sqlite, mysql (normally handled automatically)"   + "\n");
+            writer.write("# Convert from none, yml, sqlite, mysql, logstore (normally handled automatically)" + "\n");
             writer.write("convert-from: "              + plugin.getConfig().getString("convert-from") + "\n");
             writer.write("# Debug SQL statements"                                                     + "\n");
             writer.write("sql-debug: "                 + plugin.getConfig().getBoolean("sql-debug")   + "\n");
+            writer.write("# Alt lookups using sql queries, or offheap memory for very large databases" + "\n");
+            writer.write("alt-graph: "                 + plugin.getConfig().getString("alt-graph")    + "\n");
+            writer.write("# Seconds to keep sql alt lookup results, 0 to disable. Only this server's writes update" + "\n");
+            writer.write("# the results, so servers sharing a MySQL database also need mysql.changelog-seconds."   + "\n");
+            writer.write("alt-cache-seconds: "         + plugin.getConfig().getInt("alt-cache-seconds") + "\n");
+            writer.write("# Minutes before a relog from the same address updates its date, 0 for every join" + "\n");
+            writer.write("date-granularity-minutes: "  + plugin.getConfig().getInt("date-granularity-minutes") + "\n");
+            writer.write("# Write every join to a file in the traces folder, for replay with the benchmarks tools" + "\n");
+            writer.write("join-trace: "                + plugin.getConfig().getBoolean("join-trace")  + "\n");
+            writer.write("\n");
+            
+            writer.write("# Record joins and look up alts at join, or at prelogin before the player is in the world."     + "\n");
+            writer.write("# Exempt players are still recorded in prelogin mode, since permissions aren't known yet."    + "\n");
+            writer.write("# In proxy mode, AltDetector on the BungeeCord proxy records joins and sends the alts here."  + "\n");
+            writer.write("join-mode: "                 + plugin.getConfig().getString("join-mode")    + "\n");
+            writer.write("\n");
+            
+            writer.write("# Check for banned alts at prelogin: none, flag (notify staff), deny (refuse login)"       + "\n");
+            writer.write("# The player is allowed in if the check takes longer than the timeout."                    + "\n");
+            writer.write("banned-alt-policy: "         + plugin.getConfig().getString("banned-alt-policy")   + "\n");
+            writer.write("banned-alt-timeout-ms: "     + plugin.getConfig().getLong("banned-alt-timeout-ms") + "\n");
+            writer.write("banned-alt-deny-message: \"" + plugin.getConfig().getString("banned-alt-deny-message").replaceAll("\n", "\\\\n") + "\"" + "\n");
+            writer.write("banned-alt-flag: \""         + plugin.getConfig().getString("banned-alt-flag").replaceAll("\n", "\\\\n")         + "\"" + "\n");
             writer.write("\n");
             
             writer.write("# Messages when player joins the server"                                                                                + "\n");
@@ -423,6 +655,12 @@ public class Config
             writer.write("delcmd-removedplural: \""    + plugin.getConfig().getString("delcmd-removedplural").replaceAll("\n", "\\\\n")    + "\"" + "\n");
             writer.write("\n");
             
+            writer.write("# Messages for alt snapshot command"                                                                                     + "\n");
+            writer.write("snapshotcmd-exported: \""    + plugin.getConfig().getString("snapshotcmd-exported").replaceAll("\n", "\\\\n")    + "\"" + "\n");
+            writer.write("snapshotcmd-imported: \""    + plugin.getConfig().getString("snapshotcmd-imported").replaceAll("\n", "\\\\n")    + "\"" + "\n");
+            writer.write("snapshotcmd-failed: \""      + plugin.getConfig().getString("snapshotcmd-failed").replaceAll("\n", "\\\\n")      + "\"" + "\n");
+            writer.write("\n");
+            
             writer.write("# PlaceholderAPI expansions"                                                            + "\n");
             writer.write("# %altdetector_alts_<playername>%"                                                      + "\n");
             writer.write("# <playername> is case-sensitive"                                                       + "\n");
@@ -0,0 +1,290 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2021 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+
+import com.bobcat00.altdetector.database.Database.IptableType;
+import com.bobcat00.altdetector.database.Database.PlayertableType;
+
+// The YAML file is read with SnakeYAML's event parser rather than being loaded
+// into a YamlConfiguration, so only one entry is held in memory at a time. The
+// file has the format:
+//
+// ip:
+//   127_0_0_1:
+//     <uuid>: <date in msec>,<name>
+
+public class ConvertYaml
+{
+    private AltDetector plugin;
+    
+    private static final String IP_FILE_NAME = "ipdata.yml";
+    private static final int BATCH_SIZE = 1000;
+    
+    // Players seen so far, with the most recent date and name for each
+    private Map<String, DateNameType> uuidTable = new HashMap<String, DateNameType>();
+    
+    // Players not yet inserted into playertable
+    private List<String> pendingPlayers = new ArrayList<String>();
+    
+    // Players whose name has changed since they were inserted into playertable
+    private Set<String> renamedPlayers = new LinkedHashSet<String>();
+    
+    // iptable entries not yet inserted
+    private List<IptableType> pendingIps = new ArrayList<IptableType>();
+    
+    private boolean success = true;
+    
+    // Constructor
+    
+    public ConvertYaml(AltDetector plugin)
+    {
+        this.plugin = plugin;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Main method for converting YAML to SQL. The file is parsed in a single
+    // pass. Each entry is added to a batch of iptable entries, and the batch is
+    // inserted when it is full, after inserting any new players it references.
+    
+    public boolean convert()
+    {
+        File ipDataFile = new File(plugin.getDataFolder(), IP_FILE_NAME);
+        if (!ipDataFile.exists())
+        {
+            plugin.getLogger().info(IP_FILE_NAME + " not found, nothing to convert.");
+            return true;
+        }
+        
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(ipDataFile), StandardCharsets.UTF_8)))
+        {
+            parse(reader);
+        }
+        catch (IOException | YAMLException e)
+        {
+            plugin.getLogger().warning("Error reading " + IP_FILE_NAME + ": " + e.getMessage());
+            return false;
+        }
+        
+        // Insert whatever is left over
+        flush();
+        
+        // Players whose most recent name was found after they were inserted
+        for (String uuid : renamedPlayers)
+        {
+            success &= plugin.database.updateNameInPlayertable(uuidTable.get(uuid).name, uuid);
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    private class DateNameType
+    {
+        public DateNameType(long date2, String name2)
+        {
+            date = date2;
+            name = name2;
+        }
+        long date;
+        String name;
+        boolean inserted = false;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Walk the parser events. path holds the keys of the enclosing mappings,
+    // and expectKey holds, for each enclosing mapping, whether the next scalar
+    // is a key or a value. Sequences are not part of the file format and are
+    // skipped.
+    
+    private void parse(Reader reader)
+    {
+        Deque<String> path = new ArrayDeque<String>();
+        Deque<Boolean> expectKey = new ArrayDeque<Boolean>();
+        String key = null;
+        int skipDepth = 0;
+        
+        for (Event event : new Yaml().parse(reader))
+        {
+            if (skipDepth > 0)
+            {
+                if (event instanceof CollectionStartEvent)
+                {
+                    ++skipDepth;
+                }
+                else if (event instanceof CollectionEndEvent)
+                {
+                    --skipDepth;
+                }
+            }
+            else if (event instanceof MappingStartEvent)
+            {
+                if (!expectKey.isEmpty())
+                {
+                    // Nested mapping is the value for key
+                    path.addLast(key);
+                }
+                expectKey.push(true);
+            }
+            else if (event instanceof CollectionStartEvent)
+            {
+                // Sequence, ignore its contents
+                skipDepth = 1;
+                valueDone(expectKey);
+            }
+            else if (event instanceof CollectionEndEvent)
+            {
+                // End of mapping
+                expectKey.pop();
+                if (!expectKey.isEmpty())
+                {
+                    path.removeLast();
+                    valueDone(expectKey);
+                }
+            }
+            else if (event instanceof ScalarEvent && !expectKey.isEmpty())
+            {
+                String value = ((ScalarEvent)event).getValue();
+                if (expectKey.peek())
+                {
+                    key = value;
+                    expectKey.pop();
+                    expectKey.push(false);
+                }
+                else
+                {
+                    if (path.size() == 2 && path.peekFirst().equals("ip"))
+                    {
+                        addEntry(path.peekLast(), key, value);
+                    }
+                    valueDone(expectKey);
+                }
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The value for the current key is complete, so the next scalar is a key
+    
+    private void valueDone(Deque<Boolean> expectKey)
+    {
+        if (!expectKey.isEmpty())
+        {
+            expectKey.pop();
+            expectKey.push(true);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Process one entry from the file. For playertable, each player's name is
+    // the one with the most recent date. For iptable, every entry is a record.
+    
+    private void addEntry(String ipKey, String uuid, String uuidData)
+    {
+        String[] arg = uuidData.split(","); // arg[0]=date, arg[1]=name
+        long date = Long.valueOf(arg[0]).longValue();
+        String name = arg[1];
+        
+        DateNameType dateName = uuidTable.get(uuid);
+        if (dateName == null)
+        {
+            uuidTable.put(uuid, new DateNameType(date, name));
+            pendingPlayers.add(uuid);
+        }
+        else if (date > dateName.date)
+        {
+            dateName.date = date;
+            if (!dateName.name.equals(name))
+            {
+                dateName.name = name;
+                if (dateName.inserted)
+                {
+                    renamedPlayers.add(uuid);
+                }
+            }
+        }
+        
+        IptableType ipt = plugin.database.new IptableType();
+        ipt.ipaddr = ipKey.replace('_','.');
+        ipt.uuid = uuid;
+        ipt.unixdate = date/1000; // convert from msec to seconds
+        pendingIps.add(ipt);
+        
+        if (pendingIps.size() >= BATCH_SIZE)
+        {
+            flush();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Insert pending players, then the pending iptable entries which reference them
+    
+    private void flush()
+    {
+        if (!pendingPlayers.isEmpty())
+        {
+            List<PlayertableType> players = new ArrayList<PlayertableType>(pendingPlayers.size());
+            for (String uuid : pendingPlayers)
+            {
+                DateNameType dateName = uuidTable.get(uuid);
+                dateName.inserted = true;
+                PlayertableType pt = plugin.database.new PlayertableType();
+                pt.uuid = uuid;
+                pt.name = dateName.name;
+                players.add(pt);
+            }
+            success &= plugin.database.addPlayertableEntries(players);
+            pendingPlayers.clear();
+        }
+        
+        if (!pendingIps.isEmpty())
+        {
+            success &= plugin.database.addIptableEntries(pendingIps);
+            pendingIps.clear();
+        }
+    }
+
+}
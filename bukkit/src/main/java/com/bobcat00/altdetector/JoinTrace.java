@@ -0,0 +1,212 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// File of every join, for replaying real traffic in the benchmarks. Each
+// server start writes a new file, starting with the time. Records are binary,
+// about 30 bytes per join:
+//
+//   address length (4 or 16), address, milliseconds since the previous
+//   record as a varint, UUID (16 bytes), name length, name in UTF-8
+//
+// A record with address length 0 is followed by the absolute time in
+// milliseconds as a varint, which the following deltas start from.
+//
+// Joins are queued by record, which is called from the main thread and async
+// threads, and written by flush, which is called from an async task about
+// once a second. An incomplete last record from a crash is skipped.
+
+public class JoinTrace
+{
+    private final DataOutputStream out;
+    private final ConcurrentLinkedQueue<Join> queue = new ConcurrentLinkedQueue<Join>();
+    private long lastTime = -1L;
+    
+    // A join from the trace
+    
+    public static class Join
+    {
+        public long time; // milliseconds
+        public InetAddress address;
+        public UUID uuid;
+        public String name;
+    }
+    
+    // Constructor. Creates the trace file.
+    
+    public JoinTrace(File file) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Queue a join
+    
+    public void record(InetAddress address, UUID uuid, String name)
+    {
+        Join join = new Join();
+        join.time = System.currentTimeMillis();
+        join.address = address;
+        join.uuid = uuid;
+        join.name = name;
+        queue.add(join);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Write the queued joins
+    
+    public synchronized void flush() throws IOException
+    {
+        Join join;
+        while ((join = queue.poll()) != null)
+        {
+            if (lastTime < 0)
+            {
+                out.writeByte(0);
+                writeVarLong(out, join.time);
+                lastTime = join.time;
+            }
+            byte[] address = join.address.getAddress();
+            out.writeByte(address.length);
+            out.write(address);
+            writeVarLong(out, Math.max(0L, join.time - lastTime));
+            lastTime = Math.max(lastTime, join.time);
+            out.writeLong(join.uuid.getMostSignificantBits());
+            out.writeLong(join.uuid.getLeastSignificantBits());
+            byte[] name = join.name.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(Math.min(name.length, 255));
+            out.write(name, 0, Math.min(name.length, 255));
+        }
+        out.flush();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Write the queued joins and close the file
+    
+    public synchronized void close() throws IOException
+    {
+        flush();
+        out.close();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    private static long readVarLong(DataInputStream in) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint in trace");
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Reader for a trace file, one join at a time
+    
+    public static class Reader implements Closeable
+    {
+        private final DataInputStream in;
+        private long time = 0L;
+        
+        public Reader(File file) throws IOException
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+        
+        // Returns the next join, or null at the end of the trace
+        
+        public Join next() throws IOException
+        {
+            try
+            {
+                int length;
+                while ((length = in.read()) == 0)
+                {
+                    time = readVarLong(in);
+                }
+                if (length < 0)
+                {
+                    return null;
+                }
+                if ((length != 4) && (length != 16))
+                {
+                    throw new IOException("Invalid address length " + length + " in trace");
+                }
+                
+                Join join = new Join();
+                byte[] address = new byte[length];
+                in.readFully(address);
+                join.address = InetAddress.getByAddress(address);
+                time += readVarLong(in);
+                join.time = time;
+                join.uuid = new UUID(in.readLong(), in.readLong());
+                byte[] name = new byte[in.readUnsignedByte()];
+                in.readFully(name);
+                join.name = new String(name, StandardCharsets.UTF_8);
+                return join;
+            }
+            catch (EOFException e)
+            {
+                // Incomplete last record
+                return null;
+            }
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+
+}
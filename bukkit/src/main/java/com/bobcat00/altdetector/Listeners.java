@@ -0,0 +1,467 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2018 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.metadata.MetadataValue;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+
+import com.bobcat00.altdetector.database.AltMessage;
+import com.bobcat00.altdetector.database.IpAddress;
+
+import de.myzelyam.api.vanish.VanishAPI;
+
+public class Listeners implements Listener, PluginMessageListener
+{
+    private AltDetector plugin;
+    
+    // Alt lookups started at pre-login, by UUID, waiting for the player to
+    // join
+    private Map<UUID, PreLoginResult> preLoginResults = new ConcurrentHashMap<UUID, PreLoginResult>();
+    
+    // Pre-login results older than this are discarded, since the player
+    // didn't join
+    private static final long PRE_LOGIN_TIMEOUT = 60000L;
+    
+    private static class PreLoginResult
+    {
+        String ip;
+        CompletableFuture<Map<String, String>> alts = new CompletableFuture<Map<String, String>>(); // UUID -> name
+        long time;
+    }
+    
+    // Constructor
+    
+    public Listeners(AltDetector plugin)
+    {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        
+        // In proxy mode, the alts are sent by the proxy
+        if (plugin.config.isProxyMode())
+        {
+            plugin.getServer().getMessenger().registerIncomingPluginChannel(plugin, AltMessage.CHANNEL, this);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Callback method used for returning alt string to main thread
+    
+    private interface Callback<T, U>
+    {
+        public void execute(T response1, U response2);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Update database with player and IP data, and returns the alts of the
+    // player via a callback. If there are no alts, the callback is not called.
+    
+    private void updateDatabaseGetAlts(final String ip,
+                                       final String uuid,
+                                       final String name,
+                                       final Callback<String, String> callback)
+    {
+        final String joinPlayer          = plugin.config.getJoinPlayer();
+        final String joinPlayerList      = plugin.config.getJoinPlayerList();
+        final String joinPlayerSeparator = plugin.config.getJoinPlayerSeparator();
+        
+        // Go to async thread
+        
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // 1. Update playertable and iptable
+                
+                plugin.database.recordJoin(name, uuid, ip);
+                
+                // 2. Get possible alts
+                
+                String altString = plugin.database.getFormattedAltString(name,
+                                                                         uuid,
+                                                                         joinPlayer,
+                                                                         joinPlayerList,
+                                                                         joinPlayerSeparator,
+                                                                         plugin.expirationTime);
+                
+                if (altString != null)
+                {
+                    // Go back to the main thread
+                    Bukkit.getScheduler().runTaskLater(plugin, new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            // Call the callback with the result
+                            callback.execute(altString, uuid);
+                        }
+                    }, 2L); // Wait 2 ticks
+                }
+            
+            }
+            
+        }
+        );
+    
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Start the alt lookup for a connecting player, or return the one already
+    // started for this login by an earlier listener. Nothing is written to the
+    // database: the player may still be refused, and exempt players are only
+    // known once they join. The lookup includes the address the player is
+    // connecting from, since it hasn't been recorded yet. This must be called
+    // from the pre-login thread.
+    
+    CompletableFuture<Map<String, String>> lookupAtPreLogin(AsyncPlayerPreLoginEvent event)
+    {
+        final String ip = IpAddress.format(event.getAddress());
+        final String uuid = event.getUniqueId().toString();
+        long now = System.currentTimeMillis();
+        
+        PreLoginResult result = preLoginResults.get(event.getUniqueId());
+        if ((result != null) && result.ip.equals(ip) && (now - result.time <= PRE_LOGIN_TIMEOUT))
+        {
+            return result.alts;
+        }
+        
+        // Discard results for players who never joined
+        for (Iterator<PreLoginResult> it = preLoginResults.values().iterator(); it.hasNext();)
+        {
+            if (now - it.next().time > PRE_LOGIN_TIMEOUT)
+            {
+                it.remove();
+            }
+        }
+        
+        final PreLoginResult newResult = new PreLoginResult();
+        newResult.ip = ip;
+        newResult.time = now;
+        preLoginResults.put(event.getUniqueId(), newResult);
+        
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    newResult.alts.complete(plugin.database.getAltsWithIp(uuid, uuid, ip, plugin.expirationTime));
+                }
+                catch (RuntimeException e)
+                {
+                    newResult.alts.completeExceptionally(e);
+                }
+            }
+        }
+        );
+        
+        return newResult.alts;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // This is the listener for the Async Player Pre-Login Event. If join-mode
+    // is prelogin, it starts the alt lookup so the result is ready when the
+    // player joins. The join itself is recorded in onPlayerJoin, as in join
+    // mode. It runs at MONITOR priority so lookups for logins denied by other
+    // plugins are dropped.
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event)
+    {
+        if (!plugin.config.isPreLoginMode() || (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED))
+        {
+            preLoginResults.remove(event.getUniqueId());
+            return;
+        }
+        
+        lookupAtPreLogin(event);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // This is the listener for the Player Join Event. It calls a method to
+    // update the database asynchronously and has a callback to output the
+    // String listing player's alts. In prelogin mode, the alts are taken from
+    // the lookup started at pre-login, and only the join is recorded here.
+    
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onPlayerJoin(PlayerJoinEvent event)
+    {
+        Player player = event.getPlayer();
+        PreLoginResult result = preLoginResults.remove(player.getUniqueId());
+        
+        // Skip if player is exempt
+        if (player.hasPermission("altdetector.exempt"))
+        {
+            return;
+        }
+        
+        // The proxy records the join and sends the alts
+        if (plugin.config.isProxyMode())
+        {
+            return;
+        }
+        
+        // Get info about this player
+        final String ip = IpAddress.format(player.getAddress().getAddress());
+        final String uuid = player.getUniqueId().toString();
+        final String name = player.getName();
+        
+        // Add to the join trace, in every join mode
+        if (plugin.joinTrace != null)
+        {
+            plugin.joinTrace.record(player.getAddress().getAddress(), player.getUniqueId(), name);
+        }
+        
+        // Use the lookup from pre-login, if there is one for this address
+        if (plugin.config.isPreLoginMode() && (result != null) && result.ip.equals(ip))
+        {
+            final String joinPlayer          = plugin.config.getJoinPlayer();
+            final String joinPlayerList      = plugin.config.getJoinPlayerList();
+            final String joinPlayerSeparator = plugin.config.getJoinPlayerSeparator();
+            
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    plugin.database.recordJoin(name, uuid, ip);
+                }
+            }
+            );
+            
+            // Format on whichever thread finishes the lookup, then wait 2
+            // ticks for vanish plugins, as below. A failed lookup was already
+            // logged by the database.
+            result.alts.thenAccept(alts ->
+            {
+                List<String> altList = new ArrayList<String>(new LinkedHashSet<String>(alts.values()));
+                final String altString = plugin.database.getFormattedAltString(name,
+                                                                               altList,
+                                                                               joinPlayer,
+                                                                               joinPlayerList,
+                                                                               joinPlayerSeparator);
+                if (altString != null)
+                {
+                    Bukkit.getScheduler().runTaskLater(plugin, new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            notifyAlts(altString, uuid);
+                        }
+                    }, 2L); // Wait 2 ticks
+                }
+            });
+            return;
+        }
+        
+        // Add to the database - async (mostly)
+        updateDatabaseGetAlts(ip, uuid, name, new Callback<String, String>()
+        {
+            // Process alt string - main thread, delayed by 2 ticks
+            @Override
+            public void execute(String altString, final String uuid)
+            {
+                notifyAlts(altString, uuid);
+            }
+        }
+        );
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // This is the listener for the alts sent by the proxy, used if join-mode is
+    // proxy. The proxy has already recorded the join and looked up the alts,
+    // so only the formatting is done here. The message arrives through the
+    // player's connection after the player joins. The proxy doesn't pass on
+    // messages on this channel sent by clients, but the UUID is checked anyway.
+    
+    @Override
+    public void onPluginMessageReceived(String channel, Player player, byte[] message)
+    {
+        if (!channel.equals(AltMessage.CHANNEL))
+        {
+            return;
+        }
+        
+        final AltMessage altMessage;
+        try
+        {
+            altMessage = AltMessage.fromBytes(message);
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Invalid alt message for " + player.getName() + ": " + e.getMessage());
+            return;
+        }
+        
+        if (!altMessage.uuid.equals(player.getUniqueId().toString()) || player.hasPermission("altdetector.exempt"))
+        {
+            return;
+        }
+        
+        final String joinPlayer          = plugin.config.getJoinPlayer();
+        final String joinPlayerList      = plugin.config.getJoinPlayerList();
+        final String joinPlayerSeparator = plugin.config.getJoinPlayerSeparator();
+        
+        // Go to async thread, since updating the PlaceholderAPI cache may
+        // query the database
+        
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                List<String> altList = altMessage.altNames;
+                final String altString = plugin.database.getFormattedAltString(altMessage.name,
+                                                                               altList,
+                                                                               joinPlayer,
+                                                                               joinPlayerList,
+                                                                               joinPlayerSeparator);
+                
+                if (altString != null)
+                {
+                    // Go back to the main thread
+                    Bukkit.getScheduler().runTaskLater(plugin, new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            notifyAlts(altString, altMessage.uuid);
+                        }
+                    }, 2L); // Wait 2 ticks
+                }
+            }
+        }
+        );
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Output the alt string to the log, players with altdetector.notify, and
+    // Discord. This must be called from the main thread.
+    
+    private void notifyAlts(String altString, final String uuid)
+    {
+        // Player object for uuid, null if not found or invalid
+        Player player = null;
+        try
+        {
+            player = Bukkit.getPlayer(UUID.fromString(uuid));
+        }
+        catch(IllegalArgumentException exception)
+        {
+            // Bad UUID string
+        }
+
+        // Output to log file without color codes
+        String cleanAltString = stripColorCodes(altString);
+        plugin.getLogger().info(cleanAltString);
+
+        // Output including prefix to players with altdetector.notify
+        String notifyString = ChatColor.translateAlternateColorCodes('&', plugin.config.getJoinPlayerPrefix() + altString);
+
+        for (Player p : plugin.getServer().getOnlinePlayers())
+        {
+            if (p.hasPermission("altdetector.notify"))
+            {
+                // Output if recipient has seevanished perm OR player is not vanished 
+                if (p.hasPermission("altdetector.notify.seevanished") || !isVanished(player, p))
+                {
+                    p.sendMessage(notifyString);
+                }
+            }
+        }
+
+        // Send to Discord webhook if enabled
+        if (plugin.config.isDiscordEnabled() && plugin.discordWebhook != null && player != null)
+        {
+            plugin.discordWebhook.sendAltMessage(cleanAltString, plugin.config.getMCServerName());
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Remove the & color codes from an alt string
+    
+    static String stripColorCodes(String altString)
+    {
+        return altString.replaceAll("&[0123456789AaBbCcDdEeFfKkLlMmNnOoRr]", "");
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns true if a player is vanished. This should be checked at least
+    // 2 ticks after the player joins, to allow plugins to set the vanished
+    // state. This must be called from the main thread.
+    //
+    // The second parameter is the player that will receive the alt notification
+    // message, and is only used if SuperVanish/PremiumVanish is present. In
+    // this case, true is returned if player is not visible to recipient.
+    
+    private boolean isVanished(final Player player, final Player recipient)
+    {
+        if (player != null)
+        {
+            if (!plugin.superVanish)
+            {
+                // Normal processing
+                for (MetadataValue meta : player.getMetadata("vanished"))
+                {
+                    if (meta.asBoolean())
+                    {
+                        return true;
+                    }
+                }
+            }
+            else
+            {
+                // SuperVanish/PremiumVanish processing
+                // canSee returns true if recipient is allowed to see player
+                // So !canSee is vanished
+                return (!VanishAPI.canSee(recipient, player));
+            }
+        }
+
+        return false;
+    }
+
+}
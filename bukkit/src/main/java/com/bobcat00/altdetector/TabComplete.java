@@ -85,6 +85,7 @@ public class TabComplete implements TabCompleter
             // Commands are:
             // alt [player]
             // alt delete <player>
+            // alt snapshot export|import [file]
             
             List<String> argList = new ArrayList<>();
             
@@ -94,6 +95,10 @@ public class TabComplete implements TabCompleter
                 {
                     argList.add("delete"); // unfortunately, Brigadier changes the order
                 }
+                if (hasPermission(sender, "altdetector.alt.snapshot"))
+                {
+                    argList.add("snapshot");
+                }
                 if (hasPermission(sender, "altdetector.alt"))
                 {
                     argList.addAll(plugin.database.getPlayerList());
@@ -107,6 +112,13 @@ public class TabComplete implements TabCompleter
                 return filterList(argList, args[1]);
             }
             
+            if (args.length == 2 && args[0].equals("snapshot") && hasPermission(sender, "altdetector.alt.snapshot"))
+            {
+                argList.add("export");
+                argList.add("import");
+                return filterList(argList, args[1]);
+            }
+            
             return argList; // returns an empty list
             
          }
@@ -0,0 +1,163 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Cache of players and their alt names, used for the PlaceholderAPI
+// processing. Each name is stored once in a name table and given a dense int
+// id, and each player's alts are stored as an int[] of ids. A player who is an
+// alt of many others therefore costs one String and 4 bytes per listing,
+// rather than a String reference in a boxed List for every player listing it.
+//
+// The methods are synchronized, since the cache is updated by async threads
+// and read on the main thread.
+
+class AltCache
+{
+    private Map<String, Integer> ids = new HashMap<String, Integer>();
+    private String[] names = new String[256];
+    private int[][] alts = new int[256][]; // null if the player has no entry
+    private int size = 0;
+    
+    // -------------------------------------------------------------------------
+    
+    // Contents of the cache, for saving to a file
+    
+    static class Contents
+    {
+        String[] names;
+        int[][] alts;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return the id for a name, adding it to the name table if needed
+    
+    private int intern(String name)
+    {
+        Integer id = ids.get(name);
+        if (id == null)
+        {
+            if (size == names.length)
+            {
+                names = Arrays.copyOf(names, size * 2);
+                alts = Arrays.copyOf(alts, size * 2);
+            }
+            id = size++;
+            names[id] = name;
+            ids.put(name, id);
+        }
+        return id;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return true if the player has an entry
+    
+    synchronized boolean contains(String name)
+    {
+        Integer id = ids.get(name);
+        return (id != null) && (alts[id] != null);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Set the alts for a player, replacing any existing entry
+    
+    synchronized void put(String name, List<String> altNames)
+    {
+        int id = intern(name);
+        int[] list = new int[altNames.size()];
+        for (int i = 0; i < list.length; ++i)
+        {
+            list[i] = intern(altNames.get(i));
+        }
+        alts[id] = list;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return the player's alts joined with the separator, or null if the
+    // player has no entry
+    
+    synchronized String join(String name, String separator)
+    {
+        Integer id = ids.get(name);
+        if (id == null || alts[id] == null)
+        {
+            return null;
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        for (int alt : alts[id])
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(separator);
+            }
+            sb.append(names[alt]);
+        }
+        return sb.toString();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Remove everything
+    
+    synchronized void clear()
+    {
+        ids.clear();
+        names = new String[256];
+        alts = new int[256][];
+        size = 0;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return a copy of the contents. The int[] lists are shared, which is safe
+    // since they are never modified after being stored.
+    
+    synchronized Contents getContents()
+    {
+        Contents contents = new Contents();
+        contents.names = Arrays.copyOf(names, size);
+        contents.alts = Arrays.copyOf(alts, size);
+        return contents;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Replace the cache with contents from getContents
+    
+    synchronized void setContents(Contents contents)
+    {
+        clear();
+        for (String name : contents.names)
+        {
+            intern(name);
+        }
+        for (int i = 0; i < contents.alts.length; ++i)
+        {
+            alts[i] = contents.alts[i];
+        }
+    }
+
+}
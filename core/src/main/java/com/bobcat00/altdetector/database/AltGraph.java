@@ -0,0 +1,46 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.util.List;
+
+// In-memory copy of the links between IP addresses and players. When one is
+// in use, Database answers getAltNames from it instead of running the getAlts
+// query. Database keeps it up to date as it writes to the tables.
+
+public interface AltGraph
+{
+    // Add or rename a player
+    public void setName(String uuid, String name);
+    
+    // Record that a player used an IP address at the specified time. Only the
+    // most recent time is kept.
+    public void addEntry(String ipaddr, String uuid, long unixdate);
+    
+    // Remove all players with the specified name, case-insensitive
+    public void removeName(String name);
+    
+    // Same result as the getAlts query. Entries older than cutoff are ignored
+    // when looking for other players on the player's IP addresses.
+    public List<String> getAltNames(String uuid, String excludeUuid, long cutoff);
+    
+    // Remove everything
+    public void clear();
+    
+    // Release the memory
+    public void close();
+}
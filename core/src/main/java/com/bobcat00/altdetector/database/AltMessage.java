@@ -0,0 +1,95 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// The alts of a player who joined the network, sent by the proxy to the
+// backend server the player connected to, as a plugin message on CHANNEL
+
+public class AltMessage
+{
+    public static final String CHANNEL = "altdetector:alts";
+    
+    public String uuid;
+    public String name;
+    public List<String> altNames;
+    
+    // Constructor
+    
+    public AltMessage(String uuid, String name, List<String> altNames)
+    {
+        this.uuid = uuid;
+        this.name = name;
+        this.altNames = altNames;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Convert to the bytes of the plugin message
+    
+    public byte[] toBytes()
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            out.writeUTF(uuid);
+            out.writeUTF(name);
+            out.writeInt(altNames.size());
+            for (String altName : altNames)
+            {
+                out.writeUTF(altName);
+            }
+        }
+        catch (IOException e)
+        {
+            // Not possible with a ByteArrayOutputStream
+        }
+        return bytes.toByteArray();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Convert the bytes of a plugin message back
+    
+    public static AltMessage fromBytes(byte[] message) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message)))
+        {
+            String uuid = in.readUTF();
+            String name = in.readUTF();
+            int count = in.readInt();
+            if ((count < 0) || (count > message.length))
+            {
+                throw new IOException("Invalid alt count " + count);
+            }
+            List<String> altNames = new ArrayList<String>(count);
+            for (int i = 0; i < count; ++i)
+            {
+                altNames.add(in.readUTF());
+            }
+            return new AltMessage(uuid, name, altNames);
+        }
+    }
+
+}
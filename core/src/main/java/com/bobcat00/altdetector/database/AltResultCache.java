@@ -0,0 +1,266 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Cache of getAltNames results. Each entry records the IP addresses of the
+// player it belongs to, and the UUIDs and names of the player and the alts
+// found, so a write can evict exactly the entries it might change:
+// - A write to (ip, uuid) evicts the entries of every player who used ip, and
+//   of uuid itself, which may now have new alts.
+// - A change to a player's name evicts the entries listing that player.
+// - Purging a player by name evicts the entries of or listing that name.
+//
+// An entry can also change without any write, when a date falls outside the
+// expiration time, so entries are only kept for maxAgeMillis. Entries read
+// from a lagging replica can be given a shorter age.
+//
+// A lookup gets the generation before running its query and passes it to put.
+// Every eviction increments the generation, so a result from a query which
+// may have missed a write is not cached.
+//
+// The methods are synchronized, since the cache is used by async threads.
+
+class AltResultCache
+{
+    private static final int MAX_ENTRIES = 10000;
+    
+    private final long maxAgeMillis;
+    private long generation = 0;
+    
+    private Map<String, Entry> entries = new HashMap<String, Entry>();
+    private Map<String, Set<String>> byIp = new HashMap<String, Set<String>>();
+    private Map<String, Set<String>> byUuid = new HashMap<String, Set<String>>();
+    private Map<String, Set<String>> byName = new HashMap<String, Set<String>>(); // lower case
+    
+    private static class Entry
+    {
+        List<String> altNames;
+        long time;
+        long maxAgeMillis;
+        Collection<String> ips;
+        Collection<String> uuids;
+        Collection<String> names;
+    }
+    
+    // Constructor
+    
+    AltResultCache(int maxAgeSeconds)
+    {
+        this.maxAgeMillis = maxAgeSeconds * 1000L;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get the generation, before running a query whose result will be cached
+    
+    synchronized long getGeneration()
+    {
+        return generation;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get the default maximum age of an entry
+    
+    long getMaxAgeMillis()
+    {
+        return maxAgeMillis;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get a copy of a cached result, or null if there is none
+    
+    synchronized List<String> get(String key)
+    {
+        Entry entry = entries.get(key);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.time > entry.maxAgeMillis)
+        {
+            remove(key);
+            return null;
+        }
+        return new ArrayList<String>(entry.altNames);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Cache a result for up to entryMaxAgeMillis. ips are the addresses used
+    // by the player, uuids and names are those of the player and the alts
+    // found. Nothing is cached if anything was evicted since the generation
+    // was read.
+    
+    synchronized void put(String key,
+                          long queryGeneration,
+                          long entryMaxAgeMillis,
+                          List<String> altNames,
+                          Collection<String> ips,
+                          Collection<String> uuids,
+                          Collection<String> names)
+    {
+        if (queryGeneration != generation)
+        {
+            return;
+        }
+        remove(key);
+        if (entries.size() >= MAX_ENTRIES)
+        {
+            clear();
+        }
+        
+        Entry entry = new Entry();
+        entry.altNames = new ArrayList<String>(altNames);
+        entry.time = System.currentTimeMillis();
+        entry.maxAgeMillis = Math.min(entryMaxAgeMillis, maxAgeMillis);
+        entry.ips = ips;
+        entry.uuids = uuids;
+        entry.names = new ArrayList<String>(names.size());
+        for (String name : names)
+        {
+            entry.names.add(name.toLowerCase());
+        }
+        entries.put(key, entry);
+        
+        index(byIp, entry.ips, key);
+        index(byUuid, entry.uuids, key);
+        index(byName, entry.names, key);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Evict entries after a write to (ip, uuid)
+    
+    synchronized void evictIp(String ip, String uuid)
+    {
+        ++generation;
+        removeAll(byIp.get(ip));
+        removeAll(byUuid.get(uuid));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Evict entries after a change to a player's name
+    
+    synchronized void evictUuid(String uuid)
+    {
+        ++generation;
+        removeAll(byUuid.get(uuid));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Evict entries after a player is purged by name
+    
+    synchronized void evictName(String name)
+    {
+        ++generation;
+        removeAll(byName.get(name.toLowerCase()));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Evict everything
+    
+    synchronized void clear()
+    {
+        ++generation;
+        entries.clear();
+        byIp.clear();
+        byUuid.clear();
+        byName.clear();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add key to the index entry for each value
+    
+    private static void index(Map<String, Set<String>> map, Collection<String> values, String key)
+    {
+        for (String value : values)
+        {
+            Set<String> keys = map.get(value);
+            if (keys == null)
+            {
+                keys = new HashSet<String>();
+                map.put(value, keys);
+            }
+            keys.add(key);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Remove key from the index entry for each value
+    
+    private static void unindex(Map<String, Set<String>> map, Collection<String> values, String key)
+    {
+        for (String value : values)
+        {
+            Set<String> keys = map.get(value);
+            if (keys != null)
+            {
+                keys.remove(key);
+                if (keys.isEmpty())
+                {
+                    map.remove(value);
+                }
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Remove an entry and its index entries
+    
+    private void remove(String key)
+    {
+        Entry entry = entries.remove(key);
+        if (entry != null)
+        {
+            unindex(byIp, entry.ips, key);
+            unindex(byUuid, entry.uuids, key);
+            unindex(byName, entry.names, key);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Remove a set of entries. A copy is used, since remove changes the set.
+    
+    private void removeAll(Set<String> keys)
+    {
+        if (keys != null)
+        {
+            for (String key : new ArrayList<String>(keys))
+            {
+                remove(key);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+// Circuit breaker for database connections. After threshold consecutive
+// failures to get a connection, the breaker opens and requests fail at once
+// instead of each waiting for the connection timeout. After openMillis, one
+// request is allowed through as a trial. If it succeeds, the breaker closes.
+//
+// The methods are synchronized, since connections are requested by many
+// threads.
+
+class CircuitBreaker
+{
+    private final int threshold;
+    private final long openMillis;
+    
+    private int failures = 0;
+    private boolean open = false;
+    private boolean trial = false;
+    private long openedAt = 0;
+    
+    // Constructor
+    
+    CircuitBreaker(int threshold, long openMillis)
+    {
+        this.threshold = threshold;
+        this.openMillis = openMillis;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns true if a request may try to get a connection
+    
+    synchronized boolean allowRequest()
+    {
+        if (!open)
+        {
+            return true;
+        }
+        if (!trial && (System.currentTimeMillis() - openedAt >= openMillis))
+        {
+            trial = true;
+            return true;
+        }
+        return false;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns true if the breaker is open
+    
+    synchronized boolean isOpen()
+    {
+        return open;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Record a connection. Returns true if this closed the breaker.
+    
+    synchronized boolean success()
+    {
+        boolean wasOpen = open;
+        failures = 0;
+        open = false;
+        trial = false;
+        return wasOpen;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Record a failure to get a connection. Returns true if this opened the
+    // breaker.
+    
+    synchronized boolean failure()
+    {
+        trial = false;
+        ++failures;
+        if (open)
+        {
+            openedAt = System.currentTimeMillis(); // failed trial
+            return false;
+        }
+        if (failures >= threshold)
+        {
+            open = true;
+            openedAt = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,178 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2021 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.bobcat00.altdetector.database.Database.IptableType;
+import com.bobcat00.altdetector.database.Database.PlayertableType;
+
+// The conversion is done as a pipeline. The calling thread streams batches of
+// rows from the old database into a bounded queue, and one or more writer
+// threads take batches from the queue and insert them into the new database.
+// This allows reading and writing to overlap. The number of writers is
+// determined by the new database type.
+
+public class ConvertSql
+{
+    private Platform plugin;
+    
+    private static final int BATCH_SIZE = 1000;
+    
+    // Constructor
+    
+    public ConvertSql(Platform plugin)
+    {
+        this.plugin = plugin;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Interface for streaming batches of rows from the old database
+    
+    private interface BatchReader<T>
+    {
+        public boolean read(int batchSize, Consumer<List<T>> consumer);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Convert from one SQL database to another
+    
+    public boolean convert(Database fromDb, Database toDb)
+    {
+        int writers = toDb.getWriterConnections();
+        
+        // Convert playertable. This must be complete before the iptable is
+        // converted, because iptable entries reference playertable entries.
+        
+        boolean success = transfer(fromDb::streamPlayertable, toDb::addPlayertableEntries, writers, "playertable");
+        
+        if (success)
+        {
+            // Convert iptable
+            
+            success = transfer(fromDb::streamIptable, toDb::addIptableEntries, writers, "iptable");
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Copy one table. The reader runs on the calling thread, the writers each
+    // run on their own thread. An empty batch tells a writer to stop.
+    
+    private <T> boolean transfer(BatchReader<T> reader, Predicate<List<T>> writer, int writers, String table)
+    {
+        final BlockingQueue<List<T>> queue = new ArrayBlockingQueue<List<T>>(writers * 2);
+        final AtomicBoolean success = new AtomicBoolean(true);
+        final List<T> endMarker = new ArrayList<T>();
+        
+        // Start the writers
+        
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < writers; ++i)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        List<T> batch = queue.take();
+                        while (batch != endMarker)
+                        {
+                            // Keep writing batches after a failure, as the
+                            // rows of later batches are still good, and so the
+                            // reader isn't blocked
+                            try
+                            {
+                                if (!writer.test(batch))
+                                {
+                                    success.set(false);
+                                }
+                            }
+                            catch (RuntimeException e)
+                            {
+                                plugin.getLogger().warning("Error converting batch of " + batch.size() + " " + table + " entries: " + e);
+                                success.set(false);
+                            }
+                            batch = queue.take();
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        success.set(false);
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "AltDetector convert " + table + " " + i);
+            thread.start();
+            threads.add(thread);
+        }
+        
+        // Read from the old database on this thread
+        
+        boolean readSuccess = reader.read(BATCH_SIZE, batch ->
+        {
+            try
+            {
+                queue.put(batch);
+            }
+            catch (InterruptedException e)
+            {
+                success.set(false);
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        // Stop the writers and wait for them to finish
+        
+        try
+        {
+            for (int i = 0; i < writers; ++i)
+            {
+                queue.put(endMarker);
+            }
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            plugin.getLogger().warning("Interrupted while converting " + table + ".");
+            for (Thread thread : threads)
+            {
+                thread.interrupt();
+            }
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        
+        return readSuccess && success.get();
+    }
+
+}
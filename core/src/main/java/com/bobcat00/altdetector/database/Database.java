@@ -0,0 +1,2327 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2021 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// This abstract class is used to access the database, regardless of type.
+// It should be called with async threads. Methods called from onEnable()
+// may be called on the main thread.
+
+public abstract class Database
+{
+    Platform plugin;
+    DatabaseConfig config;
+    boolean debug;
+    String prefix;
+    HikariDataSource dataSource;
+    
+    // Read replica for queries which can lag behind writes, or null to read
+    // from dataSource. Reads for a player are pinned to dataSource for
+    // pinMillis after a write for that player, so they see the write.
+    HikariDataSource readDataSource = null;
+    long pinMillis = 0;
+    private final Map<String, Long> pinnedUuids = new ConcurrentHashMap<String, Long>();
+    private volatile long pinAllUntil = 0;
+    
+    // Contains all the player names in the data file. This is intended for use with the
+    // tab complete capability. Mojang's Brigadier acts weird with mixed-case names, so
+    // the names here will be all lower case. A Set is used so duplicate entries will
+    // not occur.
+    Set<String> playerList = Collections.synchronizedSet(new HashSet<String>());
+    
+    // Cache of all known players and lists of their alt names, by player name. This is
+    // used for the PlaceholderAPI processing.
+    private AltCache playerAltList = new AltCache();
+    
+    // In-memory copy of iptable used to answer getAltNames, or null to use the
+    // getAlts query
+    private AltGraph altGraph = null;
+    
+    // Builds the SQL statements for this type of database. Implementations
+    // which use SQL set this in their constructor, and may replace it in
+    // initialize() once the database version is known.
+    SqlDialect dialect;
+    
+    // Cache of getAltNames results, or null if not enabled
+    private volatile AltResultCache altResults = null;
+    
+    // getAlts queries in progress, by uuid, excludeUuid and expiration time.
+    // Concurrent lookups of the same player wait for the query in progress
+    // instead of running their own, unless it started before a write which
+    // may change its result.
+    private final ConcurrentMap<String, AltQuery> altQueries = new ConcurrentHashMap<String, AltQuery>();
+    
+    // Incremented by each write which may change the result of any lookup
+    private final AtomicLong altQueryGeneration = new AtomicLong();
+    
+    private static class AltQuery
+    {
+        final CompletableFuture<List<String>> future = new CompletableFuture<List<String>>();
+        final long generation;
+        
+        AltQuery(long generation)
+        {
+            this.generation = generation;
+        }
+    }
+    
+    // Time each (ip, uuid, name) was last written to iptable by recordJoin,
+    // for the most recently joined players. The name is part of the key so a
+    // join with a new name is always written and sent to the changelog.
+    private Map<String, Long> recentIpWrites = Collections.synchronizedMap(new LinkedHashMap<String, Long>(256, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+        {
+            return size() > RECENT_IP_WRITES;
+        }
+    });
+    static final int RECENT_IP_WRITES = 10000;
+    
+    // Name in playertable for each of the most recently joined players, so a
+    // returning player with the same name doesn't read or write playertable.
+    // Cleared along with recentIpWrites when entries are deleted.
+    private Map<String, String> knownNames = Collections.synchronizedMap(new LinkedHashMap<String, String>(256, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+        {
+            return size() > KNOWN_NAMES;
+        }
+    });
+    static final int KNOWN_NAMES = 10000;
+    
+    // Locks for recordJoin. Joins of the same player use the same lock so they
+    // run one after another, while other players' joins run in parallel.
+    private final Object[] joinLocks = new Object[JOIN_LOCK_STRIPES];
+    static final int JOIN_LOCK_STRIPES = 64;
+    
+    // Stops requests from waiting on the connection timeout while the database
+    // is unavailable
+    private final CircuitBreaker breaker = new CircuitBreaker(3, BREAKER_OPEN_MILLIS);
+    static final long BREAKER_OPEN_MILLIS = 10000L;
+    
+    // Connection timeout for database servers, short so the joins before the
+    // circuit breaker opens don't wait long. HikariCP's default is 30 seconds.
+    static final long CONNECTION_TIMEOUT_MILLIS = 2000L;
+    
+    // Joins which couldn't be written to the database, or null if not enabled
+    private volatile Spool spool = null;
+    
+    // Set while processSpool is running, so replays don't overlap
+    private final AtomicBoolean processingSpool = new AtomicBoolean(false);
+    
+    // Number of joins replayed from the spool between saves of the progress
+    static final int SPOOL_REPLAY_BATCH = 500;
+    
+    // Servers sharing the database record their joins and purges in the
+    // changelog table, and read each other's changes to keep their caches up
+    // to date. serverId identifies this server's rows.
+    private final String serverId = UUID.randomUUID().toString();
+    private volatile boolean changelogEnabled = false;
+    private long lastChangeId = 0;
+    private long lastChangelogPurge = 0;
+    static final int CHANGELOG_BATCH = 1000;
+    
+    // Number of iptable rows deleted per statement when purging by date, if
+    // the dialect supports it
+    static final int PURGE_STEP = 5000;
+    
+    // Constructor
+    
+    public Database(Platform plugin, boolean debug, String prefix)
+    {
+        this.plugin = plugin;
+        this.config = plugin.getDatabaseConfig();
+        this.debug = debug;
+        this.prefix = prefix;
+        
+        for (int i = 0; i < joinLocks.length; ++i)
+        {
+            joinLocks[i] = new Object();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Create a database of a type from config.yml: sqlite, mysql or logstore.
+    // Call initialize() before using it.
+    
+    public static Database create(Platform plugin, String type, boolean debug, String mysqlPrefix)
+    {
+        if (type.equalsIgnoreCase("mysql"))
+        {
+            return new Mysql(plugin, debug, mysqlPrefix);
+        }
+        else if (type.equalsIgnoreCase("logstore"))
+        {
+            return new Logstore(plugin, debug, ""); // no prefix for Logstore
+        }
+        else
+        {
+            return new Sqlite(plugin, debug, ""); // no prefix for SQLite
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Abstract members
+    
+    public abstract boolean initialize();
+    
+    public abstract String toString();
+    
+    // -------------------------------------------------------------------------
+    
+    // Formats the expiration time as required by the database
+    
+    String formatExpirationTime(int expirationTime)
+    {
+        return dialect.formatExpirationTime(expirationTime);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Number of connections used to write to this database during a conversion.
+    // Other implementations can replace this.
+    
+    public int getWriterConnections()
+    {
+        return 1;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Fetch size used when streaming a table. Other implementations can replace
+    // this if their driver needs a special value to stream results.
+    
+    int getStreamingFetchSize(int batchSize)
+    {
+        return batchSize;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Create the tables and indexes. This is called by initialize().
+    
+    boolean createTables()
+    {
+        for (String sql : dialect.createTables())
+        {
+            boolean success = executeStatement(sql);
+            if (!success)
+            {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Close the DataSource. This is normally done when the plugin is disabled.
+    
+    public void closeDataSource()
+    {
+        Spool closing = spool;
+        spool = null; // later joins are logged as lost
+        if (closing != null)
+        {
+            try
+            {
+                closing.close();
+            }
+            catch (IOException e)
+            {
+                plugin.getLogger().warning("Error closing spool file: " + e.getMessage());
+            }
+        }
+        if (altGraph != null)
+        {
+            altGraph.close();
+        }
+        if (dataSource != null)
+        {
+            dataSource.close();
+        }
+        if (readDataSource != null)
+        {
+            readDataSource.close();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get a Connection to the database. While the circuit breaker is open,
+    // this fails at once instead of waiting for the connection timeout.
+    
+    Connection getConnection() throws SQLException
+    {
+        if (!breaker.allowRequest())
+        {
+            throw new SQLException("database unavailable");
+        }
+        
+        try
+        {
+            Connection connection = dataSource.getConnection();
+            if (breaker.success())
+            {
+                plugin.getLogger().info("Database connection restored.");
+            }
+            return connection;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Error getting database connection: " + e.getMessage());
+            if (breaker.failure())
+            {
+                plugin.getLogger().warning("Database unavailable, retrying every " + BREAKER_OPEN_MILLIS / 1000 + " seconds.");
+            }
+            throw e;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns true if a read for the specified player, or any player if null,
+    // can go to the read replica
+    
+    boolean useReplica(String uuid)
+    {
+        if (readDataSource == null)
+        {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now < pinAllUntil)
+        {
+            return false;
+        }
+        if (uuid != null)
+        {
+            Long pinnedAt = pinnedUuids.get(uuid);
+            if ((pinnedAt != null) && (now - pinnedAt < pinMillis))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get a Connection for a read for the specified player, or any player if
+    // null. This is from the read replica unless the read must see a recent
+    // write, or the replica can't be reached.
+    
+    Connection getReadConnection(String uuid) throws SQLException
+    {
+        if (useReplica(uuid))
+        {
+            try
+            {
+                return readDataSource.getConnection();
+            }
+            catch (SQLException e)
+            {
+                plugin.getLogger().warning("Error getting read replica connection, using primary: " + e.getMessage());
+            }
+        }
+        return getConnection();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Pin reads for a player, or all players if null, to the primary after a
+    // write
+    
+    private void pin(String uuid)
+    {
+        if (readDataSource == null)
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (uuid == null)
+        {
+            pinAllUntil = now + pinMillis;
+            return;
+        }
+        pinnedUuids.put(uuid, now);
+        if (pinnedUuids.size() > 10000)
+        {
+            pinnedUuids.values().removeIf(pinnedAt -> now - pinnedAt >= pinMillis);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns true if a working connection to the database can be made
+    
+    boolean isAvailable()
+    {
+        try (Connection conn = getConnection())
+        {
+            return conn.isValid(5);
+        }
+        catch (SQLException e)
+        {
+            return false;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Execute an arbitrary SQL statement
+    
+    Boolean executeStatement(String statement)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(statement))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.execute();
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error executing statement: " + statement + ": " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get version of the SQL database
+    
+    public String getSqlVersion()
+    {
+        String version = "";
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.sqlVersion()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+
+            if (resultSet.next())
+            {
+                version = resultSet.getString("version");
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving SQL version: " + e.getMessage());
+        }
+        
+        return version;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get version of the database driver
+    
+    public String getDriverVersion()
+    {
+        String version = "";
+
+        try (Connection conn = getConnection())
+        {
+            DatabaseMetaData meta = conn.getMetaData();
+            String ver = meta.getDriverVersion();
+            if (ver != null)
+            {
+                version = ver;
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving driver version: " + e.getMessage());
+        }
+        
+        return version;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Generate playerList
+    
+    public void generatePlayerList()
+    {
+        playerList.clear();
+
+        try (Connection conn = getReadConnection(null);
+             PreparedStatement stmt = conn.prepareStatement(dialect.getAllNames()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+
+            while (resultSet.next())
+            {
+                playerList.add(resultSet.getString("name").toLowerCase());
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving player list from playertable: " + e.getMessage());
+        }
+        
+        return;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get playerlist. This can be called on the main thread.
+    
+    public List<String> getPlayerList()
+    {
+        List<String> pl = new ArrayList<>(playerList);
+        pl.sort(null);
+        return pl;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Update alts for a player. This is for the playerAltList.
+    
+    private void updatePlayerAlts(String n)
+    {
+        // Get the player's UUID (return can be null)
+        PlayerDataType playerData = lookupOfflinePlayer(n);
+        if (playerData != null)
+        {
+            // Get that player's alts and save in altList
+            List<String> altList = getAltNames(playerData.uuid, playerData.uuid, plugin.getExpirationTime());
+            playerAltList.put(playerData.name, altList);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Generate playerAltList. This must be called after generatePlayerList and
+    // is only used by the PlaceholderAPI processing.
+    
+    public void generatePlayerAltList()
+    {
+        // Perform an alt lookup for each name in playerList
+        for (String n : playerList)
+        {
+            updatePlayerAlts(n);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return a list of a player's alts from playerAltList. This is only used by
+    // the PlaceholderAPI processing and can be called on the main thread.
+    
+    public String getCachedAlts(String name)
+    {
+        // Get cached list
+        String str = playerAltList.join(name, config.getPlaceholderSeparator());
+        
+        return (str != null) ? str : "";
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Load iptable into an AltGraph and use it for getAltNames from now on.
+    // This should be called after purging old entries. Returns false, and
+    // keeps using the getAlts query, on error.
+    
+    public boolean buildAltGraph(final AltGraph graph)
+    {
+        boolean success = streamPlayertable(1000, batch ->
+        {
+            for (PlayertableType pt : batch)
+            {
+                graph.setName(pt.uuid, pt.name);
+            }
+        });
+        
+        if (success)
+        {
+            success = streamIptable(1000, batch ->
+            {
+                for (IptableType ipt : batch)
+                {
+                    graph.addEntry(ipt.ipaddr, ipt.uuid, ipt.unixdate);
+                }
+            });
+        }
+        
+        if (success)
+        {
+            altGraph = graph;
+        }
+        else
+        {
+            graph.close();
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Cache getAltNames results for up to maxAgeSeconds. Results are evicted
+    // when a write might change them, so the age only limits how long a
+    // result is kept after one of its dates has passed the expiration time.
+    
+    public void enableAltResultCache(int maxAgeSeconds)
+    {
+        altResults = new AltResultCache(maxAgeSeconds);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get a stamp which changes whenever the contents of the database change.
+    // Every new player or record changes the largest id, and purges and new
+    // or changed names increment the generation counter. Joins which only
+    // update a date don't change the stamp, since the startup purge runs
+    // before the indexes are loaded. These are primary key lookups, so no
+    // table is scanned. Returns null on error.
+    
+    String getGenerationStamp()
+    {
+        String stamp = null;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.getGeneration()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            if (resultSet.next())
+            {
+                StringBuilder sb = new StringBuilder(toString() + ":" + plugin.getExpirationTime());
+                for (int i = 1; i <= 3; ++i)
+                {
+                    sb.append(":").append(resultSet.getString(i));
+                }
+                stamp = sb.toString();
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving generation stamp: " + e.getMessage());
+        }
+        
+        return stamp;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Increment the generation counter, after a change which doesn't add a
+    // row: a purge, or a new or changed name
+    
+    void nextGeneration()
+    {
+        if (dialect == null)
+        {
+            return;
+        }
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.nextGeneration()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.executeUpdate();
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error updating generation: " + e.getMessage());
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Save playerList, and playerAltList if includeAltList is true, to a file.
+    // This is called when the plugin is disabled, before the DataSource is
+    // closed.
+    
+    public void saveIndexes(File file, boolean includeAltList)
+    {
+        String stamp = getGenerationStamp();
+        if (stamp == null)
+        {
+            file.delete();
+            return;
+        }
+        
+        List<String> players;
+        synchronized (playerList)
+        {
+            players = new ArrayList<String>(playerList);
+        }
+        AltCache.Contents alts = includeAltList ? playerAltList.getContents() : null;
+        
+        try
+        {
+            IndexCache.save(file, stamp, players, alts);
+        }
+        catch (IOException e)
+        {
+            // The old file is kept, and is only used if its stamp still matches
+            plugin.getLogger().warning("Error saving " + file.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Load playerList, and playerAltList if includeAltList is true, from a file
+    // saved by saveIndexes. Returns false if the file is missing or doesn't
+    // match the database, in which case generatePlayerList and
+    // generatePlayerAltList must be called instead.
+    
+    public boolean loadIndexes(File file, boolean includeAltList)
+    {
+        String stamp = getGenerationStamp();
+        if (stamp == null)
+        {
+            return false;
+        }
+        
+        playerList.clear();
+        playerAltList.clear();
+        
+        try
+        {
+            AltCache.Contents alts = includeAltList ? new AltCache.Contents() : null;
+            if (IndexCache.load(file, stamp, playerList, alts))
+            {
+                if (alts != null)
+                {
+                    playerAltList.setContents(alts);
+                }
+                return true;
+            }
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Error loading " + file.getName() + ": " + e.getMessage());
+            playerList.clear();
+            playerAltList.clear();
+        }
+        
+        return false;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Called after each write to the tables. A lookup started after a write
+    // must see it, so it can't wait for a query which started before and
+    // might not. A change to a player only affects the player's own queries,
+    // while a write to iptable or a delete can change any player's alts, so
+    // those increment the generation, and the queries in progress are no
+    // longer waited for. Cached results the write might change are evicted.
+    
+    void tableChanged()
+    {
+        pin(null);
+        altQueryGeneration.incrementAndGet();
+        recentIpWrites.clear();
+        knownNames.clear();
+        if (altResults != null) {altResults.clear();}
+    }
+    
+    void ipChanged(String ip, String uuid)
+    {
+        pin(uuid);
+        altQueryGeneration.incrementAndGet();
+        if (altResults != null) {altResults.evictIp(ip, uuid);}
+    }
+    
+    void playerChanged(String uuid)
+    {
+        pin(uuid);
+        altQueries.keySet().removeIf(key -> key.startsWith(uuid + ":"));
+        if (altResults != null) {altResults.evictUuid(uuid);}
+    }
+    
+    void playerRemoved(String name)
+    {
+        pin(null);
+        altQueryGeneration.incrementAndGet();
+        recentIpWrites.clear();
+        knownNames.clear();
+        if (altResults != null) {altResults.evictName(name);}
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Purge entries older than expiration time
+    // Returns a count of the number of records purged
+    
+    public int purge(int expirationTime)
+    {
+        int recordsPurged = 0;
+        
+        // If the dialect can limit the number of rows deleted, delete them in
+        // steps so other connections aren't blocked for the whole purge
+        
+        String limited = dialect.purgeByDateLimited();
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement((limited != null) ? limited : dialect.purgeByDate1()))
+        {
+            stmt.setString(1, formatExpirationTime(expirationTime));
+            if (limited != null)
+            {
+                stmt.setInt(2, PURGE_STEP);
+                int count;
+                do
+                {
+                    if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+                    count = stmt.executeUpdate();
+                    recordsPurged += count;
+                } while (count >= PURGE_STEP);
+            }
+            else
+            {
+                if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+                recordsPurged = stmt.executeUpdate();
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error purging records: " + e.getMessage());
+        }
+        tableChanged();
+        
+        // Now delete playertable entries with no children
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.purgeByDate2()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            int recordsPurged2 = stmt.executeUpdate();
+            if (debug) {plugin.getLogger().info(recordsPurged2 + " playertable entries deleted");}
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error purging playertable: " + e.getMessage());
+        }
+        if (recordsPurged > 0)
+        {
+            nextGeneration();
+        }
+        logChange("P", null, null, null);
+        
+        return recordsPurged;
+     }
+    
+    // -------------------------------------------------------------------------
+    
+    // Purge entries for specified player
+    // Returns a count of the number of players purged
+    //
+    // The Foreign key constraint means entries deleted from playertable will
+    // delete referenced entries in iptable. When reads are scoped to a realm,
+    // only the realm's iptable entries are deleted instead, then the players
+    // left with no entries in any realm, in one transaction. The count is of
+    // the players which had entries in the realm.
+    //
+    // A race condition can occur if a player is joining the server at the same
+    // time that a delete command is issued for the same player. This can cause
+    // error messages regarding either table, but the foreign key constraint
+    // will ensure consistency of the database is maintained.
+    
+    public int purge(String name)
+    {
+        int recordsPurged = 0;
+        
+        try (Connection conn = getConnection())
+        {
+            if (dialect.countByName() == null)
+            {
+                try (PreparedStatement stmt = conn.prepareStatement(dialect.purgeByName()))
+                {
+                    stmt.setString(1, name);
+                    if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+                    recordsPurged = stmt.executeUpdate();
+                }
+            }
+            else
+            {
+                conn.setAutoCommit(false);
+                try (PreparedStatement stmt1 = conn.prepareStatement(dialect.countByName());
+                     PreparedStatement stmt2 = conn.prepareStatement(dialect.purgeByName());
+                     PreparedStatement stmt3 = conn.prepareStatement(dialect.purgeOrphansByName()))
+                {
+                    stmt1.setString(1, name);
+                    if (debug) {plugin.getLogger().info("Executing statement: " + stmt1.toString());}
+                    ResultSet resultSet = stmt1.executeQuery();
+                    if (resultSet.next())
+                    {
+                        recordsPurged = resultSet.getInt(1);
+                    }
+                    stmt2.setString(1, name);
+                    if (debug) {plugin.getLogger().info("Executing statement: " + stmt2.toString());}
+                    stmt2.executeUpdate();
+                    stmt3.setString(1, name);
+                    if (debug) {plugin.getLogger().info("Executing statement: " + stmt3.toString());}
+                    stmt3.executeUpdate();
+                    conn.commit();
+                }
+                catch (SQLException e)
+                {
+                    conn.rollback();
+                    throw e;
+                }
+                finally
+                {
+                    conn.setAutoCommit(true);
+                }
+            }
+            if (recordsPurged > 0) {nextGeneration();}
+            if (altGraph != null) {altGraph.removeName(name);}
+            playerRemoved(name);
+            logChange("D", null, name, null);
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error purging records for " + name + ": " + e.getMessage());
+        }
+        
+        return recordsPurged;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Record a player joining the server from an IP address. The date in
+    // iptable only needs to be accurate to the configured granularity for the
+    // expiration time, so if this pair was written more recently than that,
+    // iptable isn't touched. Most joins are relogs from the same address.
+    //
+    // Joins of the same player are serialized, since a fast relog can start a
+    // second join before the first has finished checking and adding the
+    // iptable entry, resulting in a duplicate entry.
+    
+    public void recordJoin(String name, String uuid, String ip)
+    {
+        synchronized (joinLocks[(uuid.hashCode() & 0x7fffffff) % joinLocks.length])
+        {
+            long now = System.currentTimeMillis();
+            
+            // Spool the join if the database is unavailable
+            
+            if ((spool != null) && breaker.isOpen())
+            {
+                spoolJoin(name, uuid, ip, now);
+                return;
+            }
+            
+            // 1. Add to playertable, or update the name if the player changed it
+            
+            if (!putPlayertableEntry(name, uuid) && (spool != null))
+            {
+                spoolJoin(name, uuid, ip, now);
+                return;
+            }
+            
+            // 2. Update iptable
+            
+            String key = ip + "|" + uuid + "|" + name;
+            long granularity = config.getDateGranularityMinutes() * 60000L;
+            Long lastWrite = recentIpWrites.get(key);
+            if ((lastWrite != null) && (now - lastWrite < granularity))
+            {
+                if (debug) {plugin.getLogger().info("Skipping iptable update for " + ip + " and " + uuid + ", written " + (now - lastWrite) / 1000 + " seconds ago");}
+                return;
+            }
+            
+            boolean success;
+            if (!checkIptableEntry(ip, uuid))
+            {
+                // Add to iptable
+                success = addIptableEntry(ip, uuid);
+            }
+            else
+            {
+                // Update date in iptable
+                success = updateIptableEntry(ip, uuid);
+            }
+            
+            if (!success)
+            {
+                knownNames.remove(uuid); // check playertable again next time
+                spoolJoin(name, uuid, ip, now);
+                return;
+            }
+            if (granularity > 0)
+            {
+                recentIpWrites.put(key, now);
+            }
+            logChange("J", uuid, name, ip);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Save a join to the spool, if enabled, to be written when the database
+    // is available again. A join which can't be spooled is lost, and is
+    // logged as such.
+    
+    private void spoolJoin(String name, String uuid, String ip, long now)
+    {
+        Spool spool = this.spool;
+        if (spool == null)
+        {
+            plugin.getLogger().warning("Join of " + name + " from " + ip + " lost, it could not be written to the database and there is no spool file");
+            return;
+        }
+        
+        Spool.JoinRecord record = new Spool.JoinRecord();
+        record.unixdate = now / 1000;
+        record.ipaddr = ip;
+        record.uuid = uuid;
+        record.name = name;
+        try
+        {
+            spool.append(record);
+            if (debug) {plugin.getLogger().info("Spooled join of " + name + " from " + ip);}
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Join of " + name + " from " + ip + " lost, error writing it to the spool file: " + e.getMessage());
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Record joins and purges in the changelog table, and read other servers'
+    // changes with pollChangelog. Returns false if the database doesn't
+    // support it.
+    
+    public boolean enableChangelog()
+    {
+        List<String> create = (dialect != null) ? dialect.createChangelog() : null;
+        if (create == null)
+        {
+            return false;
+        }
+        for (String sql : create)
+        {
+            if (!executeStatement(sql))
+            {
+                return false;
+            }
+        }
+        
+        // Start after the changes made before this server started
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.getLastChange()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            if (resultSet.next())
+            {
+                lastChangeId = resultSet.getLong(1);
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving last changelog entry: " + e.getMessage());
+            return false;
+        }
+        
+        changelogEnabled = true;
+        return true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add a changelog entry, if enabled
+    
+    private void logChange(String kind, String uuid, String name, String ip)
+    {
+        if (!changelogEnabled)
+        {
+            return;
+        }
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.addChange()))
+        {
+            stmt.setString(1, serverId);
+            stmt.setString(2, kind);
+            stmt.setString(3, uuid);
+            stmt.setString(4, name);
+            stmt.setString(5, ip);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.executeUpdate();
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error adding changelog entry for " + name + ": " + e.getMessage());
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Read the changelog entries added since the last poll, and apply the
+    // other servers' changes to the caches. Entries older than a day are
+    // deleted once an hour. This is called on an async thread.
+    
+    public void pollChangelog()
+    {
+        if (!changelogEnabled)
+        {
+            return;
+        }
+        
+        int count;
+        do
+        {
+            count = 0;
+            try (Connection conn = getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(dialect.getChanges()))
+            {
+                stmt.setLong(1, lastChangeId);
+                stmt.setInt(2, CHANGELOG_BATCH);
+                ResultSet resultSet = stmt.executeQuery();
+                
+                while (resultSet.next())
+                {
+                    lastChangeId = resultSet.getLong(1);
+                    ++count;
+                    if (!serverId.equals(resultSet.getString(2)))
+                    {
+                        applyChange(resultSet.getString(3), resultSet.getString(4), resultSet.getString(5), resultSet.getString(6), resultSet.getLong(7));
+                    }
+                }
+            }
+            catch (SQLException e)
+            {
+                plugin.getLogger().warning("Database error reading changelog: " + e.getMessage());
+                return;
+            }
+        } while (count == CHANGELOG_BATCH);
+        
+        long now = System.currentTimeMillis();
+        if (now - lastChangelogPurge >= 3600000L)
+        {
+            lastChangelogPurge = now;
+            try (Connection conn = getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(dialect.purgeChanges()))
+            {
+                stmt.setString(1, formatExpirationTime(1));
+                if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+                stmt.executeUpdate();
+            }
+            catch (SQLException e)
+            {
+                plugin.getLogger().warning("Database error purging changelog: " + e.getMessage());
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Apply another server's change to the caches. The tables already have
+    // the change.
+    
+    private void applyChange(String kind, String uuid, String name, String ip, long unixdate)
+    {
+        if (kind.equals("J"))
+        {
+            playerList.add(name.toLowerCase()); // add to playerList
+            if (altGraph != null)
+            {
+                altGraph.setName(uuid, name);
+                altGraph.addEntry(ip, uuid, unixdate);
+            }
+            ipChanged(ip, uuid);
+            playerChanged(uuid);
+            if (plugin.isPlaceholderEnabled())
+            {
+                updatePlaceholderCache(name, getAltNames(uuid, uuid, plugin.getExpirationTime()));
+            }
+        }
+        else if (kind.equals("D"))
+        {
+            if (altGraph != null) {altGraph.removeName(name);}
+            playerRemoved(name);
+        }
+        else if (kind.equals("P"))
+        {
+            tableChanged();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Spool joins to file when the database is unavailable. Call after
+    // initialize().
+    
+    public boolean enableSpool(File file)
+    {
+        try
+        {
+            spool = new Spool(file);
+            return true;
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Error opening spool file " + file.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Force spooled joins to disk, and replay them if the database is
+    // available. This is called about once a second on an async thread.
+    
+    public void processSpool()
+    {
+        Spool spool = this.spool;
+        if ((spool == null) || !processingSpool.compareAndSet(false, true))
+        {
+            return;
+        }
+        
+        try
+        {
+            spool.sync();
+            
+            if (!spool.hasPending())
+            {
+                return;
+            }
+            
+            // Wait for the circuit breaker to allow a trial connection
+            
+            if (breaker.isOpen() && !isAvailable())
+            {
+                return;
+            }
+            
+            // Replay in batches, saving the progress after each one
+            
+            List<Spool.JoinRecord> records = spool.startReplay();
+            int replayed = 0;
+            boolean success = true;
+            while (success && (replayed < records.size()))
+            {
+                int end = Math.min(replayed + SPOOL_REPLAY_BATCH, records.size());
+                for (Spool.JoinRecord record : records.subList(replayed, end))
+                {
+                    success = replayJoin(record);
+                    if (!success)
+                    {
+                        // If the database is available, the join itself can't
+                        // be written, so skip it rather than block the spool
+                        if (!isAvailable())
+                        {
+                            break;
+                        }
+                        plugin.getLogger().warning("Skipping spooled join of " + record.name + " from " + record.ipaddr + ".");
+                        success = true;
+                    }
+                    ++replayed;
+                }
+                spool.saveReplay(records.subList(replayed, records.size()));
+            }
+            
+            plugin.getLogger().info(replayed + " spooled join" + (replayed == 1 ? "" : "s") + " written to database" +
+                                    (success ? "." : ", " + (records.size() - replayed) + " remaining."));
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Error replaying spool file: " + e.getMessage());
+        }
+        finally
+        {
+            processingSpool.set(false);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Write a spooled join to the database with its original date. The name is
+    // only written if no later join of the player has been recorded, since
+    // that join has the newer name.
+    
+    private boolean replayJoin(Spool.JoinRecord record)
+    {
+        synchronized (joinLocks[(record.uuid.hashCode() & 0x7fffffff) % joinLocks.length])
+        {
+            long lastJoin = getLastJoinDate(record.uuid);
+            if (lastJoin < 0)
+            {
+                return false;
+            }
+            if ((lastJoin <= record.unixdate) && !putPlayertableEntry(record.name, record.uuid))
+            {
+                return false;
+            }
+            if (checkIptableEntry(record.ipaddr, record.uuid))
+            {
+                return updateIptableEntry(record.ipaddr, record.uuid, record.unixdate);
+            }
+            return addIptableEntry(record.ipaddr, record.uuid, record.unixdate);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get the date of the latest iptable entry of a player in Unix seconds, 0
+    // if there are none, or -1 if there is an error
+    
+    long getLastJoinDate(String uuid)
+    {
+        long date = -1L;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.getLastJoin()))
+        {
+            stmt.setString(1, uuid);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            date = resultSet.next() ? resultSet.getLong(1) : 0L; // 0 if MAX is NULL
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving last join date for " + uuid + ": " + e.getMessage());
+        }
+        
+        return date;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The following methods are used when a player joins the server
+    
+    // Add a playertable entry, or update the name if the UUID is already in
+    // playertable. Nothing is written if the name is unchanged, and the name
+    // is only read from playertable if it isn't in knownNames. The write is an
+    // upsert if the dialect has one, in case another server adds the player
+    // in between. Databases without SQL have no dialect and use the other
+    // playertable methods.
+    
+    public boolean putPlayertableEntry(String name, String uuid)
+    {
+        String upsert = (dialect != null) ? dialect.upsertPlayerEntry() : null;
+        String dbName = (upsert != null) ? knownNames.get(uuid) : null;
+        if (dbName == null)
+        {
+            dbName = getNameFromPlayertable(uuid);
+        }
+        if (dbName.equals(name))
+        {
+            if (upsert != null) {knownNames.put(uuid, name);}
+            return true;
+        }
+        if (upsert == null)
+        {
+            return dbName.equals("") ? addPlayertableEntry(name, uuid) : updateNameInPlayertable(name, uuid);
+        }
+        
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(upsert))
+        {
+            stmt.setString(1, uuid);
+            stmt.setString(2, name);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.executeUpdate();
+            knownNames.put(uuid, name);
+            if (!dbName.equals("")) {nextGeneration();} // name changed
+            playerList.add(name.toLowerCase()); // add to playerList
+            if (altGraph != null) {altGraph.setName(uuid, name);}
+            playerChanged(uuid);
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error adding or updating playertable entry for " + name + " and " + uuid + ": " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    
+    // Get name from playertable with specified UUID
+    // Returns the name if found, "" if not found
+    
+    public String getNameFromPlayertable(String uuid)
+    {
+        String name = "";
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.getNameByUuid()))
+        {
+            stmt.setString(1, uuid);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+
+            if (resultSet.next())
+            {
+                name = resultSet.getString("name");
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving name from playertable for " + uuid + ": " + e.getMessage());
+        }
+        
+        return name;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add new playertable entry
+    
+    public boolean addPlayertableEntry(String name, String uuid)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.addPlayerEntry()))
+        {
+            stmt.setString(1, uuid);
+            stmt.setString(2, name);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.executeUpdate();
+            playerList.add(name.toLowerCase()); // add to playerList
+            if (altGraph != null) {altGraph.setName(uuid, name);}
+            playerChanged(uuid);
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error adding playertable entry for " + name + " and " + uuid + ": " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Update name in playertable
+    
+    public boolean updateNameInPlayertable(String name, String uuid)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.updatePlayerEntry()))
+        {
+            stmt.setString(1, name);
+            stmt.setString(2, uuid);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.executeUpdate();
+            nextGeneration();
+            playerList.add(name.toLowerCase()); // add to playerList
+            if (altGraph != null) {altGraph.setName(uuid, name);}
+            playerChanged(uuid);
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error updating playertable entry for " + name + " and " + uuid + ": " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Check if iptable entry exists for specified IP address and UUID
+    // The playertable entry for this player must be created first
+    
+    public boolean checkIptableEntry(String ip, String uuid)
+    {
+        boolean success = false;
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.checkIpEntry()))
+        {
+            stmt.setString(1, ip);
+            stmt.setString(2, uuid);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            resultSet.next();
+            success = resultSet.getBoolean(1);
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving name from playertable entry for " + ip + " and " + uuid + ": " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add new entry in iptable for specified IP address and UUID
+    // The playertable entry for this player must be created first
+    
+    public boolean addIptableEntry(String ip, String uuid)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.addIpEntry()))
+        {
+            stmt.setString(1, ip);
+            stmt.setString(2, uuid);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.executeUpdate();
+            if (altGraph != null) {altGraph.addEntry(ip, uuid, System.currentTimeMillis() / 1000);}
+            ipChanged(ip, uuid);
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error adding iptable entry for " + ip + " and " + uuid + ": " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Update date in iptable for specified IP address and UUID
+    // The playertable entry for this player must be created first
+    
+    public boolean updateIptableEntry(String ip, String uuid)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.updateIpEntry()))
+        {
+            stmt.setString(1, ip);
+            stmt.setString(2, uuid);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.executeUpdate();
+            if (altGraph != null) {altGraph.addEntry(ip, uuid, System.currentTimeMillis() / 1000);}
+            ipChanged(ip, uuid);
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error updating iptable entry for " + ip + " and " + uuid + ": " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Update date in iptable for specified IP address and UUID to a specific
+    // date, unless the date is already newer. This is used to replay joins
+    // from the spool. The playertable entry for this player must be created
+    // first.
+    
+    public boolean updateIptableEntry(String ip, String uuid, long unixdate)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.updateIpWithDate()))
+        {
+            stmt.setLong(1, unixdate);
+            stmt.setString(2, ip);
+            stmt.setString(3, uuid);
+            stmt.setLong(4, unixdate);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.executeUpdate();
+            if (altGraph != null) {altGraph.addEntry(ip, uuid, unixdate);}
+            ipChanged(ip, uuid);
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error updating iptable entry with date for " + ip + " and " + uuid + ": " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add new entry in iptable for specified IP address and UUID with a
+    // specific date. This is used for the conversion from other databases. The
+    // playertable entry for this player must be created first.
+    
+    public boolean addIptableEntry(String ip, String uuid, long unixdate)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.addIpWithDate()))
+        {
+            stmt.setString(1, ip);
+            stmt.setString(2, uuid);
+            stmt.setLong(3, unixdate);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            stmt.executeUpdate();
+            if (altGraph != null) {altGraph.addEntry(ip, uuid, unixdate);}
+            ipChanged(ip, uuid);
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error adding iptable entry with date for " + ip + " and " + uuid + ": " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get list of names, case-insensitive sort, matching IP addresses used by
+    // the specified uuid, excluding excludeUuid, and newer than expiration time.
+    // If the same lookup is already in progress on another thread, this waits
+    // for its result instead of running the query again.
+    
+    public List<String> getAltNames(String uuid, String excludeUuid, int expirationTime)
+    {
+        if (altGraph != null)
+        {
+            long cutoff = System.currentTimeMillis() / 1000 - expirationTime * 86400L;
+            return altGraph.getAltNames(uuid, excludeUuid, cutoff);
+        }
+        
+        String key = uuid + ":" + excludeUuid + ":" + expirationTime;
+        AltResultCache results = altResults;
+        if (results != null)
+        {
+            List<String> cached = results.get(key);
+            if (cached != null)
+            {
+                return cached;
+            }
+        }
+        
+        // Wait for a query in progress unless a write was made since it
+        // started, in which case this query replaces it
+        
+        final AltQuery query = new AltQuery(altQueryGeneration.get());
+        AltQuery inProgress = altQueries.compute(key, (k, q) -> ((q != null) && (q.generation == query.generation)) ? q : query);
+        if (inProgress != query)
+        {
+            if (debug) {plugin.getLogger().info("Waiting for alt lookup in progress for " + uuid);}
+            return new ArrayList<String>(inProgress.future.join()); // each caller gets its own list
+        }
+        
+        List<String> altList = new ArrayList<String>();
+        try
+        {
+            altList = (results != null) ? queryAltNames(key, results, uuid, excludeUuid, expirationTime)
+                                        : queryAltNames(uuid, excludeUuid, expirationTime);
+        }
+        finally
+        {
+            altQueries.remove(key, query);
+            query.future.complete(altList);
+        }
+        
+        return new ArrayList<String>(altList);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Run the getAlts query, on the read replica if there is one
+    
+    private List<String> queryAltNames(String uuid, String excludeUuid, int expirationTime)
+    {
+        List<String> altList = new ArrayList<String>();
+        
+        try (Connection conn = getReadConnection(uuid);
+             PreparedStatement stmt = conn.prepareStatement(dialect.getAlts()))
+        {
+            stmt.setString(1, uuid);
+            stmt.setString(2, excludeUuid);
+            stmt.setString(3, formatExpirationTime(expirationTime));
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+
+            while (resultSet.next())
+            {
+                altList.add(resultSet.getString("name"));
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving list of names from playertable for " + uuid + ": " + e.getMessage());
+        }
+        
+        return altList;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Run the getAlts query and cache the result. This also gets the UUIDs of
+    // the alts and the IP addresses and name of the player, which the cache
+    // needs to know which writes change the result.
+    
+    private List<String> queryAltNames(String key, AltResultCache results, String uuid, String excludeUuid, int expirationTime)
+    {
+        long generation = results.getGeneration();
+        
+        // A result from the read replica may be missing other players' recent
+        // writes, so it is only kept as long as reads are pinned after a write
+        long maxAgeMillis = useReplica(uuid) ? pinMillis : results.getMaxAgeMillis();
+        
+        List<String> altList = new ArrayList<String>();
+        Set<String> ips = new HashSet<String>();
+        Set<String> uuids = new HashSet<String>();
+        Set<String> names = new HashSet<String>();
+        uuids.add(uuid);
+        
+        try (Connection conn = getReadConnection(uuid);
+             PreparedStatement stmt = conn.prepareStatement(dialect.getAltsWithUuid());
+             PreparedStatement stmt2 = conn.prepareStatement(dialect.getIpsByUuid()))
+        {
+            stmt.setString(1, uuid);
+            stmt.setString(2, excludeUuid);
+            stmt.setString(3, formatExpirationTime(expirationTime));
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            while (resultSet.next())
+            {
+                String name = resultSet.getString("name");
+                if (names.add(name))
+                {
+                    altList.add(name);
+                }
+                uuids.add(resultSet.getString("uuid"));
+            }
+            
+            stmt2.setString(1, uuid);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt2.toString());}
+            resultSet = stmt2.executeQuery();
+            
+            while (resultSet.next())
+            {
+                ips.add(resultSet.getString("ipaddr"));
+                names.add(resultSet.getString("name"));
+            }
+            
+            results.put(key, generation, maxAgeMillis, altList, ips, uuids, names);
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving list of names from playertable for " + uuid + ": " + e.getMessage());
+        }
+        
+        return altList;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get the alts of a player as getAltNames does, as if the player had also
+    // used ipaddr, with their UUIDs. The result maps UUID to name in
+    // case-insensitive order of name. This is for pre-login, when the join
+    // hasn't been recorded yet. The result isn't cached, and the query is run
+    // even if there is an alt graph, since that doesn't keep UUIDs.
+    
+    public Map<String, String> getAltsWithIp(String uuid, String excludeUuid, String ipaddr, int expirationTime)
+    {
+        Map<String, String> alts = new LinkedHashMap<String, String>();
+        
+        try (Connection conn = getReadConnection(uuid);
+             PreparedStatement stmt = conn.prepareStatement(dialect.getAltsWithIp()))
+        {
+            stmt.setString(1, uuid);
+            stmt.setString(2, ipaddr);
+            stmt.setString(3, excludeUuid);
+            stmt.setString(4, formatExpirationTime(expirationTime));
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            while (resultSet.next())
+            {
+                alts.put(resultSet.getString("uuid"), resultSet.getString("name"));
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving alts for " + uuid + " and " + ipaddr + ": " + e.getMessage());
+        }
+        
+        return alts;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Class to allow getOfflinePlayer to return two values.
+    
+    public class PlayerDataType
+    {
+        public String uuid;
+        public String name;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get uuid and name for most recent entry for specified player
+    
+    public PlayerDataType lookupOfflinePlayer(String name)
+    {
+        PlayerDataType playerData = null;
+
+        try (Connection conn = getReadConnection(null);
+             PreparedStatement stmt = conn.prepareStatement(dialect.getOfflinePlayer()))
+        {
+            stmt.setString(1, name);
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+
+            if (resultSet.next())
+            {
+                playerData = new PlayerDataType();
+                playerData.uuid = resultSet.getString("uuid");
+                playerData.name = resultSet.getString("name");
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving offline player from playertable for " + name + ": " + e.getMessage());
+        }
+        
+        return playerData;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Update playerAltList after a player joins, if the PlaceholderAPI
+    // expansion is enabled
+    
+    private void updatePlaceholderCache(String name, List<String> altList)
+    {
+        if (plugin.isPlaceholderEnabled())
+        {
+            boolean newEntry = !playerAltList.contains(name);
+            playerAltList.put(name, altList);
+            if (newEntry)
+            {
+                // If a new player has joined and has alts, check each of the alts in an
+                // attempt to link those back to the new player. This is not ideal, but
+                // it's the best way to keep the cached list as up to date as possible.
+                for (String n : altList)
+                {
+                    updatePlayerAlts(n);
+                }
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Look up the alts for a player, and return a formatted string using the &
+    // color codes. If no alts are found, the returned string is null.
+    
+    public String getFormattedAltString(String name,
+                                        String uuid,
+                                        String playerFormat,
+                                        String playerListFormat,
+                                        String playerSeparator,
+                                        int expirationTime)
+    {
+        // Get possible alts
+        List<String> altList = getAltNames(uuid, uuid, expirationTime);
+        
+        return getFormattedAltString(name, altList, playerFormat, playerListFormat, playerSeparator);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Format alts which have already been looked up, such as those sent by the
+    // proxy. Returns null if there are no alts.
+    
+    public String getFormattedAltString(String name,
+                                        List<String> altList,
+                                        String playerFormat,
+                                        String playerListFormat,
+                                        String playerSeparator)
+    {
+        // Update playerAltList for PlaceholderAPI support
+        updatePlaceholderCache(name, altList);
+        
+        if (!altList.isEmpty())
+        {
+            // name may be an alt of
+            StringBuilder sb = new StringBuilder(MessageFormat.format(playerFormat, name));
+            
+            boolean outputComma = false;
+            
+            for (String altName : altList)
+            {
+                // comma
+                if (outputComma)
+                {
+                    sb.append(playerSeparator);
+                }
+                outputComma = true;
+                
+                // altName
+                sb.append(MessageFormat.format(playerListFormat, altName));
+            }
+            return sb.toString();
+        }
+        
+        return null; // No alts found
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Class to allow getPlayertable to return a List of two values.
+    
+    public class PlayertableType
+    {
+        public String uuid;
+        public String name;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get playertable for conversion from one SQL database to another
+    
+    public List<PlayertableType> getPlayertable()
+    {
+        List<PlayertableType> playertable = new ArrayList<PlayertableType>();
+
+        try (Connection conn = getReadConnection(null);
+             PreparedStatement stmt = conn.prepareStatement(dialect.getPlayertable()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+
+            while (resultSet.next())
+            {
+                PlayertableType pt = new PlayertableType();
+                pt.uuid = resultSet.getString("uuid");
+                pt.name = resultSet.getString("name");
+                playertable.add(pt);
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving Playertable: " + e.getMessage());
+        }
+        
+        return playertable;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Class to allow getIptable to return a List of three values.
+    
+    public class IptableType
+    {
+        public String ipaddr;
+        public String uuid;
+        public long unixdate;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get iptable for conversion from one SQL database to another
+    
+    public List<IptableType> getIptable()
+    {
+        List<IptableType> iptable = new ArrayList<IptableType>();
+
+        try (Connection conn = getReadConnection(null);
+             PreparedStatement stmt = conn.prepareStatement(dialect.getIptable()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+
+            while (resultSet.next())
+            {
+                IptableType ipt = new IptableType();
+                ipt.ipaddr = resultSet.getString("ipaddr");
+                ipt.uuid = resultSet.getString("uuid");
+                ipt.unixdate = resultSet.getLong(3);
+                iptable.add(ipt);
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error retrieving Playertable: " + e.getMessage());
+        }
+        
+        return iptable;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Stream playertable for conversion from one SQL database to another. Rows
+    // are passed to the consumer in lists of at most batchSize entries, so the
+    // whole table never has to be held in memory. Returns false on error.
+    
+    public boolean streamPlayertable(int batchSize, Consumer<List<PlayertableType>> consumer)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.getPlayertable()))
+        {
+            stmt.setFetchSize(getStreamingFetchSize(batchSize));
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            List<PlayertableType> batch = new ArrayList<PlayertableType>(batchSize);
+            while (resultSet.next())
+            {
+                PlayertableType pt = new PlayertableType();
+                pt.uuid = resultSet.getString("uuid");
+                pt.name = resultSet.getString("name");
+                batch.add(pt);
+                if (batch.size() >= batchSize)
+                {
+                    consumer.accept(batch);
+                    batch = new ArrayList<PlayertableType>(batchSize);
+                }
+            }
+            if (!batch.isEmpty())
+            {
+                consumer.accept(batch);
+            }
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error streaming Playertable: " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Stream iptable for conversion from one SQL database to another. Rows are
+    // passed to the consumer in lists of at most batchSize entries. Returns
+    // false on error.
+    
+    public boolean streamIptable(int batchSize, Consumer<List<IptableType>> consumer)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.getIptable()))
+        {
+            stmt.setFetchSize(getStreamingFetchSize(batchSize));
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            List<IptableType> batch = new ArrayList<IptableType>(batchSize);
+            while (resultSet.next())
+            {
+                IptableType ipt = new IptableType();
+                ipt.ipaddr = resultSet.getString("ipaddr");
+                ipt.uuid = resultSet.getString("uuid");
+                ipt.unixdate = resultSet.getLong(3);
+                batch.add(ipt);
+                if (batch.size() >= batchSize)
+                {
+                    consumer.accept(batch);
+                    batch = new ArrayList<IptableType>(batchSize);
+                }
+            }
+            if (!batch.isEmpty())
+            {
+                consumer.accept(batch);
+            }
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error streaming Iptable: " + e.getMessage());
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add a batch of playertable entries in a single transaction, or one at a
+    // time if the batch fails. This is used for the conversion from other
+    // databases. The entries are sent as multi-row inserts of up to the
+    // dialect's maximum number of rows.
+    
+    public boolean addPlayertableEntries(List<PlayertableType> entries)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection())
+        {
+            conn.setAutoCommit(false);
+            try
+            {
+                int maxRows = dialect.maxInsertRows();
+                for (int start = 0; start < entries.size(); start += maxRows)
+                {
+                    int rows = Math.min(maxRows, entries.size() - start);
+                    try (PreparedStatement stmt = conn.prepareStatement(dialect.addPlayerEntries(rows)))
+                    {
+                        int index = 1;
+                        for (PlayertableType pt : entries.subList(start, start + rows))
+                        {
+                            stmt.setString(index++, pt.uuid);
+                            stmt.setString(index++, pt.name);
+                        }
+                        if (debug) {plugin.getLogger().info("Executing insert of " + rows + " rows into playertable");}
+                        stmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+            }
+            catch (SQLException e)
+            {
+                conn.rollback();
+                throw e;
+            }
+            finally
+            {
+                conn.setAutoCommit(true);
+            }
+            for (PlayertableType pt : entries)
+            {
+                playerList.add(pt.name.toLowerCase()); // add to playerList
+                if (altGraph != null) {altGraph.setName(pt.uuid, pt.name);}
+            }
+            tableChanged();
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error adding batch of " + entries.size() + " playertable entries, adding them one at a time: " + e.getMessage());
+        }
+        
+        // One bad or duplicate row fails the whole batch, so add the rest of
+        // the batch without it
+        if (!success)
+        {
+            success = true;
+            for (PlayertableType pt : entries)
+            {
+                success &= addPlayertableEntry(pt.name, pt.uuid);
+            }
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add a batch of iptable entries with specific dates in a single
+    // transaction, or one at a time if the batch fails. This is used for the
+    // conversion from other databases. The playertable entries for these
+    // players must be created first.
+    
+    public boolean addIptableEntries(List<IptableType> entries)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection())
+        {
+            conn.setAutoCommit(false);
+            try
+            {
+                int maxRows = dialect.maxInsertRows();
+                for (int start = 0; start < entries.size(); start += maxRows)
+                {
+                    int rows = Math.min(maxRows, entries.size() - start);
+                    try (PreparedStatement stmt = conn.prepareStatement(dialect.addIpEntriesWithDate(rows)))
+                    {
+                        int index = 1;
+                        for (IptableType ipt : entries.subList(start, start + rows))
+                        {
+                            stmt.setString(index++, ipt.ipaddr);
+                            stmt.setString(index++, ipt.uuid);
+                            stmt.setLong(index++, ipt.unixdate);
+                        }
+                        if (debug) {plugin.getLogger().info("Executing insert of " + rows + " rows into iptable");}
+                        stmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+            }
+            catch (SQLException e)
+            {
+                conn.rollback();
+                throw e;
+            }
+            finally
+            {
+                conn.setAutoCommit(true);
+            }
+            if (altGraph != null)
+            {
+                for (IptableType ipt : entries)
+                {
+                    altGraph.addEntry(ipt.ipaddr, ipt.uuid, ipt.unixdate);
+                }
+            }
+            tableChanged();
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error adding batch of " + entries.size() + " iptable entries, adding them one at a time: " + e.getMessage());
+        }
+        
+        // As for playertable
+        if (!success)
+        {
+            success = true;
+            for (IptableType ipt : entries)
+            {
+                success &= addIptableEntry(ipt.ipaddr, ipt.uuid, ipt.unixdate);
+            }
+        }
+        
+        return success;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get the number of players in playertable, in every realm
+    // Returns -1 on error
+    
+    public long countPlayertableEntries()
+    {
+        long count = -1;
+        
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.countPlayers()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            if (resultSet.next())
+            {
+                count = resultSet.getLong(1);
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error counting playertable entries: " + e.getMessage());
+        }
+        
+        return count;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Delete the players and their iptable entries for this server, in one
+    // transaction. A player is kept if it still has entries from another
+    // server. This is used to undo a failed import.
+    
+    public boolean deletePlayers(List<PlayertableType> players)
+    {
+        boolean success = false;
+        
+        try (Connection conn = getConnection())
+        {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt1 = conn.prepareStatement(dialect.deleteIpByUuid());
+                 PreparedStatement stmt2 = conn.prepareStatement(dialect.deletePlayerByUuid()))
+            {
+                for (PlayertableType pt : players)
+                {
+                    stmt1.setString(1, pt.uuid);
+                    stmt1.addBatch();
+                    stmt2.setString(1, pt.uuid);
+                    stmt2.addBatch();
+                }
+                if (debug) {plugin.getLogger().info("Executing delete of " + players.size() + " players");}
+                stmt1.executeBatch();
+                stmt2.executeBatch();
+                conn.commit();
+            }
+            catch (SQLException e)
+            {
+                conn.rollback();
+                throw e;
+            }
+            finally
+            {
+                conn.setAutoCommit(true);
+            }
+            success = true;
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error deleting " + players.size() + " players: " + e.getMessage());
+        }
+        
+        // Rebuild the player list and alt graph from what is left
+        
+        generatePlayerList();
+        if (altGraph != null)
+        {
+            AltGraph graph = altGraph;
+            graph.clear();
+            if (!buildAltGraph(graph))
+            {
+                altGraph = null;
+            }
+        }
+        tableChanged();
+        nextGeneration();
+        logChange("P", null, null, null);
+        
+        return success;
+    }
+
+}
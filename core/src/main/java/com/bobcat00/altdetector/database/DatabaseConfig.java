@@ -0,0 +1,48 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+// The settings from config.yml used by Database and its subclasses
+
+public interface DatabaseConfig
+{
+    public String getMysqlHostname();
+    
+    public String getMysqlUsername();
+    
+    public String getMysqlPassword();
+    
+    public String getMysqlDatabase();
+    
+    public int getMysqlPort();
+    
+    public String getJdbcurlProperties();
+    
+    public String getMysqlReplicaHostname();
+    
+    public int getMysqlReplicaPort();
+    
+    public int getMysqlReplicaPinSeconds();
+    
+    public String getMysqlRealm();
+    
+    public boolean isMysqlNetworkScope();
+    
+    public int getDateGranularityMinutes();
+    
+    public String getPlaceholderSeparator();
+}
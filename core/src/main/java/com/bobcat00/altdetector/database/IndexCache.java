@@ -0,0 +1,275 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// This class saves the in-memory player list and alt list to a file when the
+// plugin is disabled, so they don't have to be rebuilt from the database on
+// the next start. The file holds a generation stamp from the database, and is
+// only used if the database still has the same stamp. The file is written and
+// read in one buffer rather than memory-mapped, since a mapping stays open
+// until it is garbage collected, and Windows can't replace a mapped file. The
+// format is:
+//
+// int    magic 'ADIX'
+// short  format version
+// string generation stamp
+// int    number of names in the player list, then the names
+// int    number of names in the alt list name table, or -1 if there is no
+//        alt list, then the names
+// int    number of alt list entries, then for each entry the player's id in
+//        the name table, the number of alts, and the alts' ids
+//
+// Strings are a short length and UTF-8 bytes.
+
+class IndexCache
+{
+    private static final int MAGIC = 0x41444958; // ADIX
+    private static final short VERSION = 2;
+    
+    // -------------------------------------------------------------------------
+    
+    // Write the lists to the file. altList may be null. The lists are written
+    // to a temporary file which then replaces the file, so the old file is
+    // kept if writing fails.
+    
+    static void save(File file, String stamp, Collection<String> playerList, AltCache.Contents altList) throws IOException
+    {
+        // Encode the strings first so the size of the buffer is known
+        
+        List<byte[]> strings = new ArrayList<byte[]>();
+        int size = 4 + 2 + 4 + 4 + 4;
+        
+        size += add(strings, stamp);
+        for (String name : playerList)
+        {
+            size += add(strings, name);
+        }
+        if (altList != null)
+        {
+            for (String name : altList.names)
+            {
+                size += add(strings, name);
+            }
+            for (int[] alts : altList.alts)
+            {
+                if (alts != null)
+                {
+                    size += 4 + 4 + 4 * alts.length;
+                }
+            }
+        }
+        
+        File temp = new File(file.getPath() + ".tmp");
+        temp.delete();
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            int s = 0;
+            
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            put(buffer, strings.get(s++));
+            
+            buffer.putInt(playerList.size());
+            for (int i = 0; i < playerList.size(); ++i)
+            {
+                put(buffer, strings.get(s++));
+            }
+            
+            if (altList == null)
+            {
+                buffer.putInt(-1);
+                buffer.putInt(0);
+            }
+            else
+            {
+                buffer.putInt(altList.names.length);
+                for (int i = 0; i < altList.names.length; ++i)
+                {
+                    put(buffer, strings.get(s++));
+                }
+                
+                int entries = 0;
+                for (int[] alts : altList.alts)
+                {
+                    entries += (alts != null) ? 1 : 0;
+                }
+                buffer.putInt(entries);
+                for (int id = 0; id < altList.alts.length; ++id)
+                {
+                    int[] alts = altList.alts[id];
+                    if (alts != null)
+                    {
+                        buffer.putInt(id);
+                        buffer.putInt(alts.length);
+                        for (int alt : alts)
+                        {
+                            buffer.putInt(alt);
+                        }
+                    }
+                }
+            }
+            
+            buffer.flip();
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        
+        try
+        {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            temp.delete();
+            throw e;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Read the file into the lists if its stamp matches. altList may be null if
+    // it isn't needed. Returns false, leaving the lists unchanged, if the file
+    // is missing, stale, or doesn't have the alt list.
+    
+    static boolean load(File file, String stamp, Collection<String> playerList, AltCache.Contents altList) throws IOException
+    {
+        if (!file.exists())
+        {
+            return false;
+        }
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("index cache file is too large");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer) < 0)
+                {
+                    throw new IOException("index cache file is corrupt");
+                }
+            }
+            buffer.flip();
+            
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION || !get(buffer).equals(stamp))
+            {
+                return false;
+            }
+            
+            int players = buffer.getInt();
+            List<String> names = new ArrayList<String>(players);
+            for (int i = 0; i < players; ++i)
+            {
+                names.add(get(buffer));
+            }
+            
+            if (altList != null)
+            {
+                int nameCount = buffer.getInt();
+                if (nameCount < 0)
+                {
+                    return false;
+                }
+                String[] altNames = new String[nameCount];
+                for (int i = 0; i < nameCount; ++i)
+                {
+                    altNames[i] = get(buffer);
+                }
+                
+                int[][] alts = new int[nameCount][];
+                int entries = buffer.getInt();
+                for (int i = 0; i < entries; ++i)
+                {
+                    int id = buffer.getInt();
+                    int[] list = new int[buffer.getInt()];
+                    for (int j = 0; j < list.length; ++j)
+                    {
+                        list[j] = buffer.getInt();
+                        if (list[j] < 0 || list[j] >= nameCount)
+                        {
+                            throw new IOException("index cache file is corrupt");
+                        }
+                    }
+                    alts[id] = list;
+                }
+                
+                altList.names = altNames;
+                altList.alts = alts;
+            }
+            
+            // The file was read, so fill in the player list
+            
+            playerList.addAll(names);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException e)
+        {
+            throw new IOException("index cache file is corrupt");
+        }
+        
+        return true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Encode a string, add it to the list, and return its size in the file
+    
+    private static int add(List<byte[]> strings, String string)
+    {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        strings.add(bytes);
+        return 2 + bytes.length;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    private static void put(ByteBuffer buffer, byte[] bytes)
+    {
+        buffer.putShort((short)bytes.length);
+        buffer.put(bytes);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    private static String get(ByteBuffer buffer)
+    {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
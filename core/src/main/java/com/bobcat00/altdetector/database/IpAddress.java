@@ -0,0 +1,76 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+
+// Conversion of IP addresses to the strings stored in the database, and of
+// those strings to binary
+
+public class IpAddress
+{
+    private IpAddress()
+    {
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Format an IP address as stored in the database
+    
+    public static String format(InetAddress address)
+    {
+        return address.getHostAddress().toLowerCase(Locale.ROOT).split("%")[0];
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return the binary form of an IP address, 4 or 16 bytes, or null if the
+    // address can't be converted back to exactly the same string. Only numeric
+    // addresses are parsed, so there is never a DNS lookup.
+    
+    public static byte[] toBinary(String ipaddr)
+    {
+        if (ipaddr.isEmpty() || !ipaddr.matches("[0-9a-f.:]+"))
+        {
+            return null;
+        }
+        try
+        {
+            InetAddress address = InetAddress.getByName(ipaddr);
+            if (address.getHostAddress().equals(ipaddr))
+            {
+                return address.getAddress();
+            }
+        }
+        catch (UnknownHostException e)
+        {
+        }
+        return null;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Convert the binary form back to a string
+    
+    public static String toString(byte[] binary) throws UnknownHostException
+    {
+        return InetAddress.getByAddress(binary).getHostAddress();
+    }
+
+}
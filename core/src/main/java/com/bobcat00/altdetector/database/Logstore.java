@@ -0,0 +1,1296 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// This class is a pure Java storage engine, used instead of an SQL database.
+// Every change is appended as a record to a segment file in the logstore
+// folder, and the tables are kept in memory as maps. At startup the segments
+// are replayed to rebuild the maps. Appends are forced to disk about once a
+// second by processSpool, as for the spool.
+//
+// Purging old entries only changes the maps, since the same entries are
+// purged again at the next start. Once the segments hold more dead records
+// than live ones, the purge compacts the log: the live data is written to a
+// base file, which replaces all the files numbered before it, and the old
+// files are deleted. Files left over from a crash before the delete are
+// ignored and deleted at startup.
+//
+// Each record is an int payload length, an int CRC32 of the payload, and the
+// payload. The payload starts with the record type:
+//
+// PLAYER  UUID as two longs, name as a short length and UTF-8 bytes
+// IP      UUID as two longs, IP address as a short length and UTF-8 bytes,
+//         long date in seconds
+// DELETE  UUID as two longs, removes the player and its IP entries
+//
+// A record which is incomplete or fails its CRC at the end of the last segment
+// is the result of a crash while writing, and is removed. An IP record only
+// changes the date of an existing entry if its date is later.
+
+public class Logstore extends Database
+{
+    private static final byte PLAYER = 1;
+    private static final byte IP     = 2;
+    private static final byte DELETE = 3;
+    
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+    
+    // The log is only compacted when it has at least this many dead records
+    private static final long COMPACT_MIN_DEAD = 10000;
+    
+    private File folder;
+    FileChannel segment = null; // package-private for tests
+    private int segmentNumber = 0;
+    
+    // Number of records in the files, live or not
+    private long fileRecords = 0;
+    
+    // Set by appends not yet forced to disk
+    private final AtomicBoolean unsynced = new AtomicBoolean(false);
+    
+    // The tables
+    private Map<UUID, String> players = new HashMap<UUID, String>();
+    private Map<String, Map<UUID, Long>> ipEntries = new HashMap<String, Map<UUID, Long>>();
+    
+    // Indexes
+    private Map<UUID, Set<String>> playerIps = new HashMap<UUID, Set<String>>();
+    private Map<String, Set<UUID>> nameIndex = new HashMap<String, Set<UUID>>(); // key is lower case
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Constructor
+    
+    public Logstore(Platform plugin, boolean debug, String prefix)
+    {
+        super(plugin, debug, prefix);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns name of database
+    
+    public String toString()
+    {
+        return "Logstore";
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Initialize the database. Call after creating an instance of this class.
+    // Replays the latest base file and the segments after it in order, then
+    // opens the last segment for appending.
+    
+    public boolean initialize()
+    {
+        folder = new File(plugin.getDataFolder(), "logstore");
+        if (!folder.isDirectory() && !folder.mkdirs())
+        {
+            plugin.getLogger().warning("Unable to create logstore folder.");
+            return false;
+        }
+        
+        try
+        {
+            File[] files = listSegments();
+            int first = 0;
+            for (int i = 0; i < files.length; ++i)
+            {
+                if (files[i].getName().startsWith("base-"))
+                {
+                    first = i;
+                }
+            }
+            for (int i = 0; i < first; ++i)
+            {
+                // Replaced by the base file, left over from a compaction
+                files[i].delete();
+            }
+            for (int i = first; i < files.length; ++i)
+            {
+                replay(files[i], i == files.length - 1);
+            }
+            if (files.length > 0)
+            {
+                // Append to the last segment, but never to a base file
+                File last = files[files.length - 1];
+                segmentNumber = segmentNumber(last) + (last.getName().startsWith("base-") ? 1 : 0);
+            }
+            segment = openSegment(segmentNumber);
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Error opening logstore: " + e.getMessage());
+            return false;
+        }
+        
+        return true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Close the current segment. This is normally done when the plugin is
+    // disabled.
+    
+    public void closeDataSource()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if (segment != null)
+            {
+                segment.force(true);
+                segment.close();
+                segment = null;
+            }
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Error closing logstore: " + e.getMessage());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    public String getSqlVersion()
+    {
+        return "1";
+    }
+    
+    public String getDriverVersion()
+    {
+        return "none";
+    }
+    
+    // The stamp is computed from the contents rather than the segments, since
+    // the startup purge always writes a new segment
+    
+    String getGenerationStamp()
+    {
+        long entries = 0;
+        long sum = 0;
+        
+        lock.readLock().lock();
+        try
+        {
+            for (Map.Entry<UUID, String> player : players.entrySet())
+            {
+                sum += player.getKey().hashCode() * 31L + player.getValue().hashCode();
+            }
+            for (Map<UUID, Long> ip : ipEntries.values())
+            {
+                for (long date : ip.values())
+                {
+                    ++entries;
+                    sum += date;
+                }
+            }
+            return toString() + ":" + plugin.getExpirationTime() + ":" + players.size() + ":" + entries + ":" + sum;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The data is already in memory, so an AltGraph isn't needed
+    
+    public boolean buildAltGraph(AltGraph graph)
+    {
+        graph.close();
+        return false;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Segment and base files
+    
+    private File[] listSegments()
+    {
+        File[] files = folder.listFiles((dir, name) -> name.matches("(segment|base)-\\d+\\.log"));
+        if (files == null)
+        {
+            files = new File[0];
+        }
+        Arrays.sort(files, (f1, f2) -> Integer.compare(segmentNumber(f1), segmentNumber(f2)));
+        return files;
+    }
+    
+    private static int segmentNumber(File file)
+    {
+        String name = file.getName();
+        return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.length() - 4));
+    }
+    
+    private File segmentFile(int number)
+    {
+        return new File(folder, String.format("segment-%08d.log", number));
+    }
+    
+    private File baseFile(int number)
+    {
+        return new File(folder, String.format("base-%08d.log", number));
+    }
+    
+    private FileChannel openSegment(int number) throws IOException
+    {
+        return FileChannel.open(segmentFile(number).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Replay one segment into the maps. A bad record at the end of the last
+    // segment is truncated.
+    
+    private void replay(File file, boolean last) throws IOException
+    {
+        long goodLength = 0;
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            CRC32 crc = new CRC32();
+            while (true)
+            {
+                int length;
+                try
+                {
+                    length = in.readInt();
+                }
+                catch (EOFException e)
+                {
+                    break; // clean end
+                }
+                int expected = in.readInt();
+                if (length <= 0 || length > 65536)
+                {
+                    throw new IOException("invalid record length");
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int)crc.getValue() != expected)
+                {
+                    throw new IOException("record failed CRC check");
+                }
+                apply(ByteBuffer.wrap(payload));
+                ++fileRecords;
+                goodLength += 8 + length;
+            }
+        }
+        catch (IOException e)
+        {
+            String reason = (e instanceof EOFException) ? "incomplete record" : e.getMessage();
+            if (!last)
+            {
+                throw new IOException(file.getName() + ": " + reason);
+            }
+            plugin.getLogger().warning("Removing bad record at end of " + file.getName() + ": " + reason);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+            {
+                channel.truncate(goodLength);
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Apply a record to the maps. The write lock must be held, except at
+    // startup.
+    
+    private void apply(ByteBuffer record) throws IOException
+    {
+        byte type = record.get();
+        UUID uuid = new UUID(record.getLong(), record.getLong());
+        switch (type)
+        {
+        case PLAYER:
+            putPlayer(uuid, getString(record));
+            break;
+        case IP:
+            String ipaddr = getString(record);
+            putIpEntry(ipaddr, uuid, record.getLong());
+            break;
+        case DELETE:
+            removePlayer(uuid);
+            break;
+        default:
+            throw new IOException("unknown record type " + type);
+        }
+    }
+    
+    private static String getString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Map updates
+    
+    private void putPlayer(UUID uuid, String name)
+    {
+        String oldName = players.put(uuid, name);
+        if (oldName != null)
+        {
+            removeFromNameIndex(oldName, uuid);
+        }
+        nameIndex.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> new HashSet<UUID>()).add(uuid);
+    }
+    
+    private void putIpEntry(String ipaddr, UUID uuid, long unixdate)
+    {
+        ipEntries.computeIfAbsent(ipaddr, k -> new HashMap<UUID, Long>()).merge(uuid, unixdate, Math::max);
+        playerIps.computeIfAbsent(uuid, k -> new HashSet<String>()).add(ipaddr);
+    }
+    
+    private void removeFromNameIndex(String name, UUID uuid)
+    {
+        String key = name.toLowerCase(Locale.ROOT);
+        Set<UUID> uuids = nameIndex.get(key);
+        if (uuids != null)
+        {
+            uuids.remove(uuid);
+            if (uuids.isEmpty())
+            {
+                nameIndex.remove(key);
+            }
+        }
+    }
+    
+    // Remove a player and their IP entries
+    private void removePlayer(UUID uuid)
+    {
+        String name = players.remove(uuid);
+        if (name != null)
+        {
+            removeFromNameIndex(name, uuid);
+        }
+        Set<String> ips = playerIps.remove(uuid);
+        if (ips != null)
+        {
+            for (String ipaddr : ips)
+            {
+                removeIpEntry(ipaddr, uuid);
+            }
+        }
+    }
+    
+    private void removeIpEntry(String ipaddr, UUID uuid)
+    {
+        Map<UUID, Long> entries = ipEntries.get(ipaddr);
+        if (entries != null)
+        {
+            entries.remove(uuid);
+            if (entries.isEmpty())
+            {
+                ipEntries.remove(ipaddr);
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Record encoding
+    
+    private static ByteBuffer playerRecord(UUID uuid, String name)
+    {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + 16 + 2 + bytes.length);
+        record.put(PLAYER).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        record.putShort((short)bytes.length).put(bytes);
+        return record;
+    }
+    
+    private static ByteBuffer ipRecord(String ipaddr, UUID uuid, long unixdate)
+    {
+        byte[] bytes = ipaddr.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + 16 + 2 + bytes.length + 8);
+        record.put(IP).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        record.putShort((short)bytes.length).put(bytes);
+        record.putLong(unixdate);
+        return record;
+    }
+    
+    private static ByteBuffer deleteRecord(UUID uuid)
+    {
+        ByteBuffer record = ByteBuffer.allocate(1 + 16);
+        record.put(DELETE).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        return record;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Write records to a channel, each with its length and CRC
+    
+    private static void write(FileChannel channel, List<ByteBuffer> records) throws IOException
+    {
+        int size = 0;
+        for (ByteBuffer record : records)
+        {
+            size += 8 + record.position();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (ByteBuffer record : records)
+        {
+            crc.reset();
+            crc.update(record.array(), 0, record.position());
+            buffer.putInt(record.position());
+            buffer.putInt((int)crc.getValue());
+            buffer.put(record.array(), 0, record.position());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Append records to the current segment and apply them to the maps,
+    // starting a new segment when the current one is full. The new segment is
+    // opened before the full one is closed, so a failure leaves the current
+    // segment usable. A failed write is truncated away, so the next append
+    // doesn't follow a torn record. The write lock must be held.
+    
+    private boolean append(List<ByteBuffer> records)
+    {
+        try
+        {
+            if (segment == null)
+            {
+                throw new IOException("logstore is closed");
+            }
+            if (segment.size() > SEGMENT_SIZE)
+            {
+                segment.force(true);
+                FileChannel next = openSegment(segmentNumber + 1);
+                FileChannel full = segment;
+                segment = next;
+                ++segmentNumber;
+                full.close();
+            }
+            long start = segment.size();
+            try
+            {
+                write(segment, records);
+            }
+            catch (IOException e)
+            {
+                try
+                {
+                    segment.truncate(start);
+                }
+                catch (IOException e2)
+                {
+                    plugin.getLogger().warning("Logstore error truncating a failed write: " + e2.getMessage());
+                }
+                throw e;
+            }
+            unsynced.set(true);
+            fileRecords += records.size();
+            for (ByteBuffer record : records)
+            {
+                record.flip();
+                apply(record);
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Logstore error writing records: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    private boolean append(ByteBuffer record)
+    {
+        List<ByteBuffer> records = new ArrayList<ByteBuffer>(1);
+        records.add(record);
+        return append(records);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Parse a UUID string, returning null if it is invalid
+    
+    private static UUID parseUuid(String uuid)
+    {
+        try
+        {
+            return UUID.fromString(uuid);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Number of records which would be written by compact
+    
+    private long liveRecords()
+    {
+        long live = players.size();
+        for (Map<UUID, Long> ip : ipEntries.values())
+        {
+            live += ip.size();
+        }
+        return live;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Write all live data to a new base file and delete the old files. Once
+    // the base file is in place, the old files are ignored at startup, so a
+    // crash before they are deleted doesn't bring back purged entries. The
+    // write lock must be held.
+    
+    private void compact() throws IOException
+    {
+        int newNumber = segmentNumber + 1;
+        File tmpFile = new File(folder, "compact.tmp");
+        
+        try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+            for (Map.Entry<UUID, String> player : players.entrySet())
+            {
+                records.add(playerRecord(player.getKey(), player.getValue()));
+                if (records.size() >= 1000)
+                {
+                    write(channel, records);
+                    records.clear();
+                }
+            }
+            for (Map.Entry<String, Map<UUID, Long>> ip : ipEntries.entrySet())
+            {
+                for (Map.Entry<UUID, Long> entry : ip.getValue().entrySet())
+                {
+                    records.add(ipRecord(ip.getKey(), entry.getKey(), entry.getValue()));
+                    if (records.size() >= 1000)
+                    {
+                        write(channel, records);
+                        records.clear();
+                    }
+                }
+            }
+            write(channel, records);
+            channel.force(true);
+        }
+        
+        // Switch to the base file and a new segment, then remove the old files
+        
+        if (segment != null)
+        {
+            segment.force(true);
+            segment.close();
+            segment = null;
+        }
+        File[] oldFiles = listSegments();
+        Files.move(tmpFile.toPath(), baseFile(newNumber).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        fileRecords = liveRecords();
+        segmentNumber = newNumber + 1;
+        segment = openSegment(segmentNumber);
+        for (File file : oldFiles)
+        {
+            file.delete();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    public void generatePlayerList()
+    {
+        lock.readLock().lock();
+        try
+        {
+            playerList.clear();
+            for (String name : players.values())
+            {
+                playerList.add(name.toLowerCase());
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Purge entries older than expiration time, and compact the log if it has
+    // enough dead records
+    // Returns a count of the number of records purged
+    
+    public int purge(int expirationTime)
+    {
+        int recordsPurged = 0;
+        long cutoff = System.currentTimeMillis() / 1000 - expirationTime * 86400L;
+        
+        lock.writeLock().lock();
+        try
+        {
+            for (Iterator<Map.Entry<String, Map<UUID, Long>>> ipIt = ipEntries.entrySet().iterator(); ipIt.hasNext();)
+            {
+                Map.Entry<String, Map<UUID, Long>> ip = ipIt.next();
+                for (Iterator<Map.Entry<UUID, Long>> it = ip.getValue().entrySet().iterator(); it.hasNext();)
+                {
+                    Map.Entry<UUID, Long> entry = it.next();
+                    if (entry.getValue() < cutoff)
+                    {
+                        it.remove();
+                        Set<String> ips = playerIps.get(entry.getKey());
+                        ips.remove(ip.getKey());
+                        if (ips.isEmpty())
+                        {
+                            playerIps.remove(entry.getKey());
+                        }
+                        ++recordsPurged;
+                    }
+                }
+                if (ip.getValue().isEmpty())
+                {
+                    ipIt.remove();
+                }
+            }
+            
+            // Now delete players with no entries
+            
+            for (UUID uuid : new ArrayList<UUID>(players.keySet()))
+            {
+                if (!playerIps.containsKey(uuid))
+                {
+                    removePlayer(uuid);
+                }
+            }
+            
+            long dead = fileRecords - liveRecords();
+            if ((dead >= COMPACT_MIN_DEAD) && (dead > fileRecords / 2))
+            {
+                compact();
+            }
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Logstore error compacting: " + e.getMessage());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        
+        tableChanged();
+        
+        return recordsPurged;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Purge entries for specified player
+    // Returns a count of the number of players removed, like the SQL version
+    
+    public int purge(String name)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Set<UUID> uuids = nameIndex.get(name.toLowerCase(Locale.ROOT));
+            if (uuids == null)
+            {
+                return 0;
+            }
+            List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+            for (UUID uuid : uuids)
+            {
+                records.add(deleteRecord(uuid));
+            }
+            boolean success = append(records);
+            playerRemoved(name);
+            return success ? records.size() : 0;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get name from playertable with specified UUID
+    // Returns the name if found, "" if not found
+    
+    public String getNameFromPlayertable(String uuid)
+    {
+        lock.readLock().lock();
+        try
+        {
+            UUID u = parseUuid(uuid);
+            String name = (u != null) ? players.get(u) : null;
+            return (name != null) ? name : "";
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add new playertable entry. Fails if the player already exists.
+    
+    public boolean addPlayertableEntry(String name, String uuid)
+    {
+        UUID u = parseUuid(uuid);
+        if (u == null)
+        {
+            return false;
+        }
+        
+        lock.writeLock().lock();
+        try
+        {
+            if (players.containsKey(u))
+            {
+                plugin.getLogger().warning("Logstore error adding playertable entry for " + name + " and " + uuid + ": already exists");
+                return false;
+            }
+            if (append(playerRecord(u, name)))
+            {
+                playerList.add(name.toLowerCase()); // add to playerList
+                return true;
+            }
+            return false;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Update name in playertable
+    
+    public boolean updateNameInPlayertable(String name, String uuid)
+    {
+        UUID u = parseUuid(uuid);
+        if (u == null)
+        {
+            return false;
+        }
+        
+        lock.writeLock().lock();
+        try
+        {
+            if (!players.containsKey(u))
+            {
+                return true; // no rows updated, same as SQL
+            }
+            if (append(playerRecord(u, name)))
+            {
+                playerList.add(name.toLowerCase()); // add to playerList
+                return true;
+            }
+            return false;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Check if iptable entry exists for specified IP address and UUID
+    
+    public boolean checkIptableEntry(String ip, String uuid)
+    {
+        lock.readLock().lock();
+        try
+        {
+            UUID u = parseUuid(uuid);
+            Map<UUID, Long> entries = ipEntries.get(ip);
+            return (u != null) && (entries != null) && entries.containsKey(u);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add or update an iptable entry. The playertable entry for this player
+    // must be created first.
+    
+    public boolean addIptableEntry(String ip, String uuid, long unixdate)
+    {
+        UUID u = parseUuid(uuid);
+        if (u == null)
+        {
+            return false;
+        }
+        
+        lock.writeLock().lock();
+        try
+        {
+            if (!players.containsKey(u))
+            {
+                plugin.getLogger().warning("Logstore error adding iptable entry for " + ip + " and " + uuid + ": player not found");
+                return false;
+            }
+            Map<UUID, Long> entries = ipEntries.get(ip);
+            Long date = (entries != null) ? entries.get(u) : null;
+            if ((date != null) && (date >= unixdate))
+            {
+                return true; // only the most recent date is kept
+            }
+            return append(ipRecord(ip, u, unixdate));
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Only the most recent date is kept, so this is the same as adding
+    
+    public boolean updateIptableEntry(String ip, String uuid, long unixdate)
+    {
+        return addIptableEntry(ip, uuid, unixdate);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Logstore writes to local files, so there are no outages to spool joins
+    // for. Returns true so processSpool is still called every second, to
+    // force the appended records to disk.
+    
+    public boolean enableSpool(File file)
+    {
+        return true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Force the records appended since the last call to disk. The read lock
+    // keeps the segment from being closed, while lookups carry on.
+    
+    public void processSpool()
+    {
+        if (!unsynced.getAndSet(false))
+        {
+            return;
+        }
+        
+        lock.readLock().lock();
+        try
+        {
+            if (segment != null)
+            {
+                segment.force(false);
+            }
+        }
+        catch (IOException e)
+        {
+            plugin.getLogger().warning("Logstore error forcing records to disk: " + e.getMessage());
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add or update an iptable entry with the current date
+    
+    public boolean addIptableEntry(String ip, String uuid)
+    {
+        return addIptableEntry(ip, uuid, System.currentTimeMillis() / 1000);
+    }
+    
+    public boolean updateIptableEntry(String ip, String uuid)
+    {
+        return addIptableEntry(ip, uuid, System.currentTimeMillis() / 1000);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get list of names, case-insensitive sort, matching IP addresses used by
+    // the specified uuid, excluding excludeUuid, and newer than expiration time
+    
+    public List<String> getAltNames(String uuid, String excludeUuid, int expirationTime)
+    {
+        long cutoff = System.currentTimeMillis() / 1000 - expirationTime * 86400L;
+        Set<String> altNames = new LinkedHashSet<String>();
+        
+        lock.readLock().lock();
+        try
+        {
+            UUID u = parseUuid(uuid);
+            UUID exclude = parseUuid(excludeUuid);
+            Set<String> ips = (u != null) ? playerIps.get(u) : null;
+            if (ips != null)
+            {
+                for (String ipaddr : ips)
+                {
+                    for (Map.Entry<UUID, Long> entry : ipEntries.get(ipaddr).entrySet())
+                    {
+                        if (!entry.getKey().equals(exclude) && entry.getValue() >= cutoff)
+                        {
+                            altNames.add(players.get(entry.getKey()));
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        
+        List<String> altList = new ArrayList<String>(altNames);
+        altList.sort((n1, n2) -> n1.toLowerCase(Locale.ROOT).compareTo(n2.toLowerCase(Locale.ROOT)));
+        return altList;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get the alts of a player with their UUIDs, as if the player had also
+    // used ipaddr
+    
+    @Override
+    public Map<String, String> getAltsWithIp(String uuid, String excludeUuid, String ipaddr, int expirationTime)
+    {
+        long cutoff = System.currentTimeMillis() / 1000 - expirationTime * 86400L;
+        Map<UUID, String> alts = new HashMap<UUID, String>();
+        
+        lock.readLock().lock();
+        try
+        {
+            UUID u = parseUuid(uuid);
+            UUID exclude = parseUuid(excludeUuid);
+            Set<String> ips = new HashSet<String>();
+            if ((u != null) && playerIps.containsKey(u))
+            {
+                ips.addAll(playerIps.get(u));
+            }
+            ips.add(ipaddr);
+            for (String ip : ips)
+            {
+                Map<UUID, Long> entries = ipEntries.get(ip);
+                if (entries == null)
+                {
+                    continue;
+                }
+                for (Map.Entry<UUID, Long> entry : entries.entrySet())
+                {
+                    if (!entry.getKey().equals(exclude) && entry.getValue() >= cutoff)
+                    {
+                        alts.put(entry.getKey(), players.get(entry.getKey()));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        
+        List<Map.Entry<UUID, String>> sorted = new ArrayList<Map.Entry<UUID, String>>(alts.entrySet());
+        sorted.sort((e1, e2) -> e1.getValue().toLowerCase(Locale.ROOT).compareTo(e2.getValue().toLowerCase(Locale.ROOT)));
+        Map<String, String> altMap = new LinkedHashMap<String, String>();
+        for (Map.Entry<UUID, String> entry : sorted)
+        {
+            altMap.put(entry.getKey().toString(), entry.getValue());
+        }
+        return altMap;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get uuid and name for most recent entry for specified player
+    
+    public PlayerDataType lookupOfflinePlayer(String name)
+    {
+        PlayerDataType playerData = null;
+        long newest = Long.MIN_VALUE;
+        
+        lock.readLock().lock();
+        try
+        {
+            Set<UUID> uuids = nameIndex.get(name.toLowerCase(Locale.ROOT));
+            if (uuids != null)
+            {
+                for (UUID uuid : uuids)
+                {
+                    Set<String> ips = playerIps.get(uuid);
+                    if (ips == null)
+                    {
+                        continue; // the SQL version joins with iptable
+                    }
+                    for (String ipaddr : ips)
+                    {
+                        long date = ipEntries.get(ipaddr).get(uuid);
+                        if (date > newest)
+                        {
+                            newest = date;
+                            playerData = new PlayerDataType();
+                            playerData.uuid = uuid.toString();
+                            playerData.name = players.get(uuid);
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        
+        return playerData;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Table dumps for conversion
+    
+    public List<PlayertableType> getPlayertable()
+    {
+        List<PlayertableType> playertable = new ArrayList<PlayertableType>();
+        streamPlayertable(Integer.MAX_VALUE, batch -> playertable.addAll(batch));
+        return playertable;
+    }
+    
+    public List<IptableType> getIptable()
+    {
+        List<IptableType> iptable = new ArrayList<IptableType>();
+        streamIptable(Integer.MAX_VALUE, batch -> iptable.addAll(batch));
+        return iptable;
+    }
+    
+    // The batches are built under the lock and passed on after it is released
+    
+    public boolean streamPlayertable(int batchSize, Consumer<List<PlayertableType>> consumer)
+    {
+        List<PlayertableType> all = new ArrayList<PlayertableType>();
+        lock.readLock().lock();
+        try
+        {
+            for (Map.Entry<UUID, String> player : players.entrySet())
+            {
+                PlayertableType pt = new PlayertableType();
+                pt.uuid = player.getKey().toString();
+                pt.name = player.getValue();
+                all.add(pt);
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < all.size(); i += batchSize)
+        {
+            consumer.accept(new ArrayList<PlayertableType>(all.subList(i, (int)Math.min(all.size(), (long)i + batchSize))));
+        }
+        return true;
+    }
+    
+    public boolean streamIptable(int batchSize, Consumer<List<IptableType>> consumer)
+    {
+        List<IptableType> all = new ArrayList<IptableType>();
+        lock.readLock().lock();
+        try
+        {
+            for (Map.Entry<String, Map<UUID, Long>> ip : ipEntries.entrySet())
+            {
+                for (Map.Entry<UUID, Long> entry : ip.getValue().entrySet())
+                {
+                    IptableType ipt = new IptableType();
+                    ipt.ipaddr = ip.getKey();
+                    ipt.uuid = entry.getKey().toString();
+                    ipt.unixdate = entry.getValue();
+                    all.add(ipt);
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < all.size(); i += batchSize)
+        {
+            consumer.accept(new ArrayList<IptableType>(all.subList(i, (int)Math.min(all.size(), (long)i + batchSize))));
+        }
+        return true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Batch inserts for conversion. Like the SQL versions, the whole batch
+    // fails if any entry is invalid.
+    
+    public boolean addPlayertableEntries(List<PlayertableType> entries)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            List<ByteBuffer> records = new ArrayList<ByteBuffer>(entries.size());
+            Set<UUID> batch = new HashSet<UUID>();
+            for (PlayertableType pt : entries)
+            {
+                UUID u = parseUuid(pt.uuid);
+                if (u == null || players.containsKey(u) || !batch.add(u))
+                {
+                    plugin.getLogger().warning("Logstore error adding batch of " + entries.size() + " playertable entries: invalid or duplicate " + pt.uuid);
+                    return false;
+                }
+                records.add(playerRecord(u, pt.name));
+            }
+            if (!append(records))
+            {
+                return false;
+            }
+            for (PlayertableType pt : entries)
+            {
+                playerList.add(pt.name.toLowerCase()); // add to playerList
+            }
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public boolean addIptableEntries(List<IptableType> entries)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            List<ByteBuffer> records = new ArrayList<ByteBuffer>(entries.size());
+            for (IptableType ipt : entries)
+            {
+                UUID u = parseUuid(ipt.uuid);
+                if (u == null || !players.containsKey(u))
+                {
+                    plugin.getLogger().warning("Logstore error adding batch of " + entries.size() + " iptable entries: player not found for " + ipt.uuid);
+                    return false;
+                }
+                records.add(ipRecord(ipt.ipaddr, u, ipt.unixdate));
+            }
+            return append(records);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    public long countPlayertableEntries()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return players.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Appends a delete record for each of the players
+    
+    public boolean deletePlayers(List<PlayertableType> players)
+    {
+        boolean success;
+        
+        lock.writeLock().lock();
+        try
+        {
+            List<ByteBuffer> records = new ArrayList<ByteBuffer>(players.size());
+            for (PlayertableType pt : players)
+            {
+                UUID uuid = parseUuid(pt.uuid);
+                if ((uuid != null) && this.players.containsKey(uuid))
+                {
+                    records.add(deleteRecord(uuid));
+                }
+            }
+            success = records.isEmpty() || append(records);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        
+        generatePlayerList();
+        tableChanged();
+        
+        return success;
+    }
+
+}
@@ -0,0 +1,199 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2021 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+// This class is used to access the MySQL database. The SQL statements are in
+// MysqlDialect and Mysql8Dialect.
+
+public class Mysql extends Database
+{
+    // Constructor
+    
+    public Mysql(Platform plugin, boolean debug, String prefix)
+    {
+        super(plugin, debug, prefix);
+        dialect = new MysqlDialect(prefix);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns name of database
+    
+    public String toString()
+    {
+        return "MySQL";
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Use several connections when converting into MySQL, so inserts can be in
+    // flight on the server at the same time
+    
+    public int getWriterConnections()
+    {
+        return 4;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The MySQL driver only streams results row by row when the fetch size is
+    // Integer.MIN_VALUE. Otherwise it reads the whole result set into memory.
+    
+    int getStreamingFetchSize(int batchSize)
+    {
+        return Integer.MIN_VALUE;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Create the HikariCP configuration for a server. The MySQL driver's
+    // statement cache is enabled. MySQL's server-side prepared statements are
+    // intentionally not used. Batched inserts are rewritten by the driver into
+    // multi-row inserts. The connection timeout is short, so joins don't wait
+    // long for a server which is down.
+    
+    private HikariConfig createConfig(String hostname, int port)
+    {
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setJdbcUrl("jdbc:mysql://" +
+                                hostname + ":" +
+                                port + "/" +
+                                config.getMysqlDatabase() +
+                                config.getJdbcurlProperties());
+        hikariConfig.setUsername(config.getMysqlUsername());
+        hikariConfig.setPassword(config.getMysqlPassword());
+        hikariConfig.setConnectionTimeout(CONNECTION_TIMEOUT_MILLIS);
+        hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+        hikariConfig.addDataSourceProperty("prepStmtCacheSize", "50");
+        hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "1024");
+        hikariConfig.addDataSourceProperty("rewriteBatchedStatements", "true");
+        if (debug) {plugin.getLogger().info("JDBC URL: " + hikariConfig.getJdbcUrl());}
+        return hikariConfig;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Initialize the database. Call after creating an instance of this class.
+    
+    public boolean initialize()
+    {
+        // Initialize HikariCP. The JDBC URL is constructed from the values in
+        // the config file.
+        
+        dataSource = new HikariDataSource(createConfig(config.getMysqlHostname(), config.getMysqlPort()));
+        
+        // Optional read replica, with the same database and credentials
+        
+        String replicaHostname = config.getMysqlReplicaHostname();
+        if (!replicaHostname.isEmpty())
+        {
+            HikariConfig replicaConfig = createConfig(replicaHostname, config.getMysqlReplicaPort());
+            replicaConfig.setReadOnly(true);
+            readDataSource = new HikariDataSource(replicaConfig);
+            pinMillis = config.getMysqlReplicaPinSeconds() * 1000L;
+            plugin.getLogger().info("Using read replica " + replicaHostname + ":" + config.getMysqlReplicaPort() + ".");
+        }
+        
+        // Optional realm partitioning iptable between servers sharing the
+        // database. The realm is put in the SQL statements as a literal, so
+        // only simple names are allowed.
+        
+        String realm = config.getMysqlRealm();
+        boolean network = config.isMysqlNetworkScope();
+        if (realm.isEmpty())
+        {
+            realm = null;
+            network = true;
+        }
+        else if (!realm.matches("[A-Za-z0-9_.-]{1,64}"))
+        {
+            plugin.getLogger().warning("Invalid realm " + realm + ", iptable will not be partitioned.");
+            realm = null;
+            network = true;
+        }
+        else
+        {
+            plugin.getLogger().info("Using realm " + realm + (network ? ", network scope." : ", realm scope."));
+        }
+        
+        // MySQL 8.0.19 added row aliases for upserts. MariaDB reports a
+        // version such as 10.11.6-MariaDB and keeps using VALUES().
+        
+        String version = getSqlVersion();
+        if (!version.contains("MariaDB") && SqlDialect.versionAtLeast(version, 8, 0, 19))
+        {
+            dialect = new Mysql8Dialect(prefix, realm, network);
+        }
+        else
+        {
+            dialect = new MysqlDialect(prefix, realm, network);
+        }
+        
+        // Send initial SQL statements
+        
+        if (!createTables())
+        {
+            return false;
+        }
+        
+        return (realm == null) || addRealmColumn();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add the realm column to an iptable created before it was partitioned
+    
+    private boolean addRealmColumn()
+    {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.countRealmColumns()))
+        {
+            if (debug) {plugin.getLogger().info("Executing statement: " + stmt.toString());}
+            ResultSet resultSet = stmt.executeQuery();
+            
+            if (resultSet.next() && (resultSet.getInt(1) > 0))
+            {
+                return true;
+            }
+        }
+        catch (SQLException e)
+        {
+            plugin.getLogger().warning("Database error checking for realm column: " + e.getMessage());
+            return false;
+        }
+        
+        plugin.getLogger().info("Adding realm column to " + prefix + "iptable, existing entries are assigned to realm " + dialect.realm + ".");
+        for (String sql : dialect.addRealmColumn())
+        {
+            if (!executeStatement(sql))
+            {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+}
@@ -0,0 +1,43 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+// SQL statements for MySQL 8.0.19 and later, where VALUES() in an upsert is
+// deprecated in favor of a row alias
+
+class Mysql8Dialect extends MysqlDialect
+{
+    // Constructor
+    
+    Mysql8Dialect(String prefix)
+    {
+        super(prefix);
+    }
+    
+    Mysql8Dialect(String prefix, String realm, boolean network)
+    {
+        super(prefix, realm, network);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    String upsertPlayerEntry()
+    {
+        return sql("INSERT INTO {prefix}playertable (uuid, name) VALUES (?, ?) AS new ON DUPLICATE KEY UPDATE name = new.name;");
+    }
+
+}
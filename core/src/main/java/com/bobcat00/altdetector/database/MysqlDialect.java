@@ -0,0 +1,141 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.util.Arrays;
+import java.util.List;
+
+// SQL statements for MySQL before 8.0.19, and MariaDB. These are mostly
+// differences with SQLite's datetime function.
+
+class MysqlDialect extends SqlDialect
+{
+    // Constructor
+    
+    MysqlDialect(String prefix)
+    {
+        super(prefix);
+    }
+    
+    MysqlDialect(String prefix, String realm, boolean network)
+    {
+        super(prefix, realm, network);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The foreign key constraint means:
+    // 1. Inserts into iptable must have a valid playerid referencing playertable
+    // 2. Deletes from playertable will also delete referenced entries in iptable
+    // Note that MySQL will automatically create an index for playerid.
+    //
+    // The generation table has a single row, whose counter is incremented by
+    // changes which don't add a row to the other tables.
+    //
+    // A partitioned iptable has a realm column, indexed after ipaddr and after
+    // playerid so queries in one realm read only that realm's index entries.
+    
+    List<String> createTables()
+    {
+        if (realm != null)
+        {
+            return Arrays.asList(
+                sql("CREATE TABLE IF NOT EXISTS {prefix}playertable (id INTEGER PRIMARY KEY AUTO_INCREMENT NOT NULL, uuid CHAR(36) UNIQUE KEY NOT NULL, name VARCHAR(255) NOT NULL);"),
+                sql("CREATE TABLE IF NOT EXISTS {prefix}generation (id INTEGER PRIMARY KEY NOT NULL, counter BIGINT NOT NULL);"),
+                sql("INSERT IGNORE INTO {prefix}generation (id, counter) VALUES (1, 0);"),
+                sql("CREATE TABLE IF NOT EXISTS {prefix}iptable (id INTEGER PRIMARY KEY AUTO_INCREMENT NOT NULL, ipaddr VARCHAR(255) NOT NULL, playerid INTEGER NOT NULL, date DATETIME NOT NULL, realm VARCHAR(64) NOT NULL DEFAULT '', INDEX ipaddr_realm_index (ipaddr, realm), INDEX playerid_realm_index (playerid, realm), FOREIGN KEY (playerid) REFERENCES {prefix}playertable(id) ON DELETE CASCADE);"));
+        }
+        return Arrays.asList(
+            sql("CREATE TABLE IF NOT EXISTS {prefix}playertable (id INTEGER PRIMARY KEY AUTO_INCREMENT NOT NULL, uuid CHAR(36) UNIQUE KEY NOT NULL, name VARCHAR(255) NOT NULL);"),
+            sql("CREATE TABLE IF NOT EXISTS {prefix}generation (id INTEGER PRIMARY KEY NOT NULL, counter BIGINT NOT NULL);"),
+            sql("INSERT IGNORE INTO {prefix}generation (id, counter) VALUES (1, 0);"),
+            sql("CREATE TABLE IF NOT EXISTS {prefix}iptable (id INTEGER PRIMARY KEY AUTO_INCREMENT NOT NULL, ipaddr VARCHAR(255) NOT NULL, playerid INTEGER NOT NULL, date DATETIME NOT NULL, INDEX ipaddr_index (ipaddr), FOREIGN KEY (playerid) REFERENCES {prefix}playertable(id) ON DELETE CASCADE);"));
+    }
+    
+    // An iptable created before it was partitioned gets the realm column and
+    // its indexes. The existing rows are assigned to this server's realm.
+    
+    String countRealmColumns()
+    {
+        return "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = '" + prefix + "iptable' AND column_name = 'realm';";
+    }
+    
+    List<String> addRealmColumn()
+    {
+        return Arrays.asList(
+            sql("ALTER TABLE {prefix}iptable ADD COLUMN realm VARCHAR(64) NOT NULL DEFAULT " + literal(realm) + ", ADD INDEX ipaddr_realm_index (ipaddr, realm), ADD INDEX playerid_realm_index (playerid, realm);"),
+            sql("ALTER TABLE {prefix}iptable ALTER COLUMN realm SET DEFAULT '';"));
+    }
+    
+    // Each row is a join (kind J) or a purge by name (kind D) on the server
+    // with the random id in server, in the server's realm. Rows are read in id
+    // order.
+    
+    List<String> createChangelog()
+    {
+        return Arrays.asList(
+            sql("CREATE TABLE IF NOT EXISTS {prefix}changelog (id BIGINT PRIMARY KEY AUTO_INCREMENT NOT NULL, server CHAR(36) NOT NULL, realm VARCHAR(64) NOT NULL DEFAULT '', kind CHAR(1) NOT NULL, uuid CHAR(36), name VARCHAR(255), ipaddr VARCHAR(255), date DATETIME NOT NULL, INDEX date_index (date));"));
+    }
+    
+    String sqlVersion()
+    {
+        return "SELECT version() AS version;";
+    }
+    
+    String now()
+    {
+        return "now()";
+    }
+    
+    String cutoff()
+    {
+        return "SUBDATE(now(),?)";
+    }
+    
+    String fromUnixTime()
+    {
+        return "FROM_UNIXTIME(?)";
+    }
+    
+    String toUnixTime(String column)
+    {
+        return "UNIX_TIMESTAMP(" + column + ")";
+    }
+    
+    String formatExpirationTime(int expirationTime)
+    {
+        return Integer.toString(expirationTime);
+    }
+    
+    int maxInsertRows()
+    {
+        return 1000;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    String upsertPlayerEntry()
+    {
+        return sql("INSERT INTO {prefix}playertable (uuid, name) VALUES (?, ?) ON DUPLICATE KEY UPDATE name = VALUES(name);");
+    }
+    
+    String purgeByDateLimited()
+    {
+        return sql("DELETE FROM {prefix}iptable WHERE date < " + cutoff() + scopedRows() + " LIMIT ?;");
+    }
+
+}
@@ -0,0 +1,520 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// AltGraph kept in direct ByteBuffers, outside the Java heap, so a graph with
+// millions of players adds nothing for the garbage collector to scan. All
+// buffer access is absolute, so any number of lookups can run at once under
+// the read lock.
+//
+// There are two open-addressing hash tables, one keyed by UUID giving a player
+// id, and one keyed by binary IP address giving an IP id. Ids index fixed-size
+// records. Each (IP, player) pair is an edge record, which is on two linked
+// lists, one for the IP and one for the player. Player names are UTF-8 bytes in
+// a separate area.
+//
+// Deleted players are marked as removed and their edges are skipped. Their
+// space is reclaimed when the graph is rebuilt at the next start.
+
+public class OffHeapAltGraph implements AltGraph
+{
+    // Hash slot layouts. ref is 0 for an empty slot, -1 for a deleted slot,
+    // otherwise id + 1.
+    private static final int PLAYER_SLOT = 20; // long msb, long lsb, int ref
+    private static final int IP_SLOT     = 20; // 16 byte key, int ref
+    
+    // Record layouts
+    private static final int PLAYER_REC = 16; // int firstEdge, int nameOffset, int nameLength, int removed
+    private static final int IP_REC     = 4;  // int firstEdge
+    private static final int EDGE_REC   = 24; // int player, int ip, long date, int nextForIp, int nextForPlayer
+    
+    private static final int NONE = -1;
+    
+    private ByteBuffer playerSlots;
+    private ByteBuffer ipSlots;
+    private ByteBuffer players;
+    private ByteBuffer ips;
+    private ByteBuffer edges;
+    private ByteBuffer names;
+    
+    private int playerSlotCount;
+    private int ipSlotCount;
+    private int playerSlotsUsed; // including deleted slots
+    private int ipSlotsUsed;
+    private int playerCount;
+    private int ipCount;
+    private int edgeCount;
+    private int namesSize;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Constructor
+    
+    public OffHeapAltGraph()
+    {
+        allocate();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Set up empty buffers
+    
+    private void allocate()
+    {
+        playerSlotCount = 1024;
+        ipSlotCount = 1024;
+        playerSlots = ByteBuffer.allocateDirect(playerSlotCount * PLAYER_SLOT);
+        ipSlots = ByteBuffer.allocateDirect(ipSlotCount * IP_SLOT);
+        players = ByteBuffer.allocateDirect(512 * PLAYER_REC);
+        ips = ByteBuffer.allocateDirect(512 * IP_REC);
+        edges = ByteBuffer.allocateDirect(1024 * EDGE_REC);
+        names = ByteBuffer.allocateDirect(8192);
+        playerSlotsUsed = 0;
+        ipSlotsUsed = 0;
+        playerCount = 0;
+        ipCount = 0;
+        edgeCount = 0;
+        namesSize = 0;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return a buffer with room for needed bytes, copying the old contents
+    
+    private static ByteBuffer ensure(ByteBuffer buffer, long needed)
+    {
+        if (needed <= buffer.capacity())
+        {
+            return buffer;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < needed)
+        {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE)
+        {
+            throw new IllegalStateException("Alt graph is too large");
+        }
+        ByteBuffer bigger = ByteBuffer.allocateDirect((int)capacity);
+        ByteBuffer old = buffer.duplicate();
+        old.clear();
+        bigger.put(old);
+        bigger.clear();
+        return bigger;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Hash function for the tables
+    
+    private static int hash(long a, long b)
+    {
+        long h = a * 0x9E3779B97F4A7C15L ^ b * 0xC2B2AE3D27D4EB4FL;
+        h ^= (h >>> 31);
+        return (int)(h ^ (h >>> 32)) & 0x7FFFFFFF;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Convert an IP address to the 16 byte key. Numeric addresses use the
+    // IPv6 form of their binary address. Anything else uses an MD5 digest of
+    // the string.
+    
+    private static long[] ipKey(String ipaddr)
+    {
+        byte[] binary = IpAddress.toBinary(ipaddr);
+        byte[] key = new byte[16];
+        if (binary == null)
+        {
+            try
+            {
+                key = MessageDigest.getInstance("MD5").digest(ipaddr.getBytes(StandardCharsets.UTF_8));
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+        else if (binary.length == 4)
+        {
+            key[10] = (byte)0xFF;
+            key[11] = (byte)0xFF;
+            System.arraycopy(binary, 0, key, 12, 4);
+        }
+        else
+        {
+            key = binary;
+        }
+        ByteBuffer bb = ByteBuffer.wrap(key);
+        return new long[] {bb.getLong(), bb.getLong()};
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Find the slot for a key in a table, either the slot holding it or the
+    // empty slot where it would go. Deleted slots are skipped.
+    
+    private static int findSlot(ByteBuffer slots, int slotCount, int slotSize, long a, long b)
+    {
+        int slot = hash(a, b) % slotCount;
+        while (true)
+        {
+            int offset = slot * slotSize;
+            int ref = slots.getInt(offset + 16);
+            if (ref == 0 || (ref > 0 && slots.getLong(offset) == a && slots.getLong(offset + 8) == b))
+            {
+                return slot;
+            }
+            slot = (slot + 1) % slotCount;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Rebuild a table with twice as many slots, dropping deleted slots
+    
+    private static ByteBuffer rehash(ByteBuffer slots, int slotCount, int slotSize)
+    {
+        int newCount = slotCount * 2;
+        ByteBuffer newSlots = ByteBuffer.allocateDirect(newCount * slotSize);
+        for (int slot = 0; slot < slotCount; ++slot)
+        {
+            int offset = slot * slotSize;
+            int ref = slots.getInt(offset + 16);
+            if (ref > 0)
+            {
+                long a = slots.getLong(offset);
+                long b = slots.getLong(offset + 8);
+                int newOffset = findSlot(newSlots, newCount, slotSize, a, b) * slotSize;
+                newSlots.putLong(newOffset, a);
+                newSlots.putLong(newOffset + 8, b);
+                newSlots.putInt(newOffset + 16, ref);
+            }
+        }
+        return newSlots;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return the player id for a UUID, or NONE
+    
+    private int findPlayer(String uuid)
+    {
+        UUID u;
+        try
+        {
+            u = UUID.fromString(uuid);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return NONE;
+        }
+        int offset = findSlot(playerSlots, playerSlotCount, PLAYER_SLOT, u.getMostSignificantBits(), u.getLeastSignificantBits()) * PLAYER_SLOT;
+        return playerSlots.getInt(offset + 16) - 1;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return the player id for a UUID, adding the player if not found. Must be
+    // called with the write lock held.
+    
+    private int addPlayer(UUID u)
+    {
+        if ((playerSlotsUsed + 1) * 2 > playerSlotCount)
+        {
+            playerSlots = rehash(playerSlots, playerSlotCount, PLAYER_SLOT);
+            playerSlotCount *= 2;
+            playerSlotsUsed = playerCount;
+        }
+        
+        long a = u.getMostSignificantBits();
+        long b = u.getLeastSignificantBits();
+        int offset = findSlot(playerSlots, playerSlotCount, PLAYER_SLOT, a, b) * PLAYER_SLOT;
+        int ref = playerSlots.getInt(offset + 16);
+        if (ref > 0)
+        {
+            return ref - 1;
+        }
+        
+        int id = playerCount++;
+        players = ensure(players, (long)playerCount * PLAYER_REC);
+        int rec = id * PLAYER_REC;
+        players.putInt(rec, NONE);
+        players.putInt(rec + 4, 0);
+        players.putInt(rec + 8, 0);
+        players.putInt(rec + 12, 0);
+        
+        playerSlots.putLong(offset, a);
+        playerSlots.putLong(offset + 8, b);
+        playerSlots.putInt(offset + 16, id + 1);
+        ++playerSlotsUsed;
+        return id;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return the IP id for an address, adding it if not found. Must be called
+    // with the write lock held.
+    
+    private int addIp(long[] key)
+    {
+        if ((ipSlotsUsed + 1) * 2 > ipSlotCount)
+        {
+            ipSlots = rehash(ipSlots, ipSlotCount, IP_SLOT);
+            ipSlotCount *= 2;
+        }
+        
+        int offset = findSlot(ipSlots, ipSlotCount, IP_SLOT, key[0], key[1]) * IP_SLOT;
+        int ref = ipSlots.getInt(offset + 16);
+        if (ref > 0)
+        {
+            return ref - 1;
+        }
+        
+        int id = ipCount++;
+        ips = ensure(ips, (long)ipCount * IP_REC);
+        ips.putInt(id * IP_REC, NONE);
+        
+        ipSlots.putLong(offset, key[0]);
+        ipSlots.putLong(offset + 8, key[1]);
+        ipSlots.putInt(offset + 16, id + 1);
+        ++ipSlotsUsed;
+        return id;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Return a player's name
+    
+    private String getName(int player)
+    {
+        int rec = player * PLAYER_REC;
+        int nameOffset = players.getInt(rec + 4);
+        int nameLength = players.getInt(rec + 8);
+        byte[] bytes = new byte[nameLength];
+        for (int i = 0; i < nameLength; ++i)
+        {
+            bytes[i] = names.get(nameOffset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    private boolean isRemoved(int player)
+    {
+        return players.getInt(player * PLAYER_REC + 12) != 0;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    @Override
+    public void setName(String uuid, String name)
+    {
+        UUID u = UUID.fromString(uuid);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        
+        lock.writeLock().lock();
+        try
+        {
+            int player = addPlayer(u);
+            int rec = player * PLAYER_REC;
+            
+            // Only store the name again if it changed
+            if (players.getInt(rec + 8) == bytes.length && getName(player).equals(name))
+            {
+                return;
+            }
+            
+            names = ensure(names, (long)namesSize + bytes.length);
+            for (int i = 0; i < bytes.length; ++i)
+            {
+                names.put(namesSize + i, bytes[i]);
+            }
+            players.putInt(rec + 4, namesSize);
+            players.putInt(rec + 8, bytes.length);
+            namesSize += bytes.length;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    @Override
+    public void addEntry(String ipaddr, String uuid, long unixdate)
+    {
+        UUID u = UUID.fromString(uuid);
+        long[] key = ipKey(ipaddr);
+        
+        lock.writeLock().lock();
+        try
+        {
+            int player = addPlayer(u);
+            int ip = addIp(key);
+            
+            // Update the existing edge if there is one
+            for (int edge = players.getInt(player * PLAYER_REC); edge != NONE; edge = edges.getInt(edge * EDGE_REC + 20))
+            {
+                int e = edge * EDGE_REC;
+                if (edges.getInt(e + 4) == ip)
+                {
+                    if (unixdate > edges.getLong(e + 8))
+                    {
+                        edges.putLong(e + 8, unixdate);
+                    }
+                    return;
+                }
+            }
+            
+            // Add an edge at the head of both lists
+            int edge = edgeCount++;
+            edges = ensure(edges, (long)edgeCount * EDGE_REC);
+            int e = edge * EDGE_REC;
+            edges.putInt(e, player);
+            edges.putInt(e + 4, ip);
+            edges.putLong(e + 8, unixdate);
+            edges.putInt(e + 16, ips.getInt(ip * IP_REC));
+            edges.putInt(e + 20, players.getInt(player * PLAYER_REC));
+            ips.putInt(ip * IP_REC, edge);
+            players.putInt(player * PLAYER_REC, edge);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // This scans every player, which is acceptable since it is only used by
+    // the delete command.
+    
+    @Override
+    public void removeName(String name)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            for (int slot = 0; slot < playerSlotCount; ++slot)
+            {
+                int offset = slot * PLAYER_SLOT;
+                int ref = playerSlots.getInt(offset + 16);
+                if (ref > 0 && getName(ref - 1).equalsIgnoreCase(name))
+                {
+                    // Mark as removed, and delete from the hash table so the
+                    // player gets a new id if they return
+                    players.putInt((ref - 1) * PLAYER_REC + 12, 1);
+                    playerSlots.putInt(offset + 16, -1);
+                }
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    @Override
+    public List<String> getAltNames(String uuid, String excludeUuid, long cutoff)
+    {
+        Set<String> altNames = new LinkedHashSet<String>();
+        
+        lock.readLock().lock();
+        try
+        {
+            int player = findPlayer(uuid);
+            int exclude = findPlayer(excludeUuid);
+            Set<Integer> seen = new HashSet<Integer>();
+            
+            if (player != NONE)
+            {
+                // Each IP address used by the player
+                for (int edge = players.getInt(player * PLAYER_REC); edge != NONE; edge = edges.getInt(edge * EDGE_REC + 20))
+                {
+                    int ip = edges.getInt(edge * EDGE_REC + 4);
+                    
+                    // Each player who used that address recently enough
+                    for (int other = ips.getInt(ip * IP_REC); other != NONE; other = edges.getInt(other * EDGE_REC + 16))
+                    {
+                        int e = other * EDGE_REC;
+                        int alt = edges.getInt(e);
+                        if (alt != exclude && edges.getLong(e + 8) >= cutoff && !isRemoved(alt) && seen.add(alt))
+                        {
+                            altNames.add(getName(alt));
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        
+        List<String> altList = new ArrayList<String>(altNames);
+        altList.sort((n1, n2) -> n1.toLowerCase(Locale.ROOT).compareTo(n2.toLowerCase(Locale.ROOT)));
+        return altList;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    @Override
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            allocate();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Direct buffers are freed when they are garbage collected, so dropping
+    // the references is enough
+    
+    @Override
+    public void close()
+    {
+        clear();
+    }
+
+}
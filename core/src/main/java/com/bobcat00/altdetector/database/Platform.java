@@ -0,0 +1,41 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+// The plugin running the database, on a Bukkit server or a proxy. Database
+// only needs the plugin's logger, data folder and settings, so the same code
+// runs on either.
+
+public interface Platform
+{
+    public Logger getLogger();
+    
+    // Folder for the SQLite database, the Logstore files and the spool
+    public File getDataFolder();
+    
+    public DatabaseConfig getDatabaseConfig();
+    
+    // Days that alts are kept
+    public int getExpirationTime();
+    
+    // True if the PlaceholderAPI expansion is registered, so the alts of each
+    // player are cached
+    public boolean isPlaceholderEnabled();
+}
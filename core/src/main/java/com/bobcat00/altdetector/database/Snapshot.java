@@ -0,0 +1,601 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import com.bobcat00.altdetector.database.Database.IptableType;
+import com.bobcat00.altdetector.database.Database.PlayertableType;
+
+// Binary snapshot of playertable and iptable. The file is written and read
+// through a FileChannel. The players are held in memory in both directions,
+// so records can refer to them by index, while the iptable records are
+// streamed. All values are big-endian. The format is:
+//
+// int     magic 'ADSN'
+// short   format version
+// int     number of players
+// players UUID as two longs, name as a short length and UTF-8 bytes
+// records one per iptable entry, terminated by a 0 byte:
+//         varint  player index + 1
+//         varint  0 if a new IP address follows, else IP index + 1
+//         [ip]    byte length (4, 16, or 0 for a string) and the address
+//         varlong date in seconds as a zigzag delta from the previous record
+// int     CRC32 of everything before it
+//
+// Players and IP addresses are each stored once, and records refer to them by
+// index. IP addresses are stored in binary when that reproduces the exact
+// string in the database, otherwise they are stored as a string.
+
+public class Snapshot
+{
+    private Database database;
+    
+    private static final int MAGIC = 0x4144534E; // ADSN
+    private static final short VERSION = 1;
+    private static final int BATCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 65536;
+    
+    private int playerCount = 0;
+    private int recordCount = 0;
+    
+    // Players handed to the database by the current import
+    private List<PlayertableType> inserted = new ArrayList<PlayertableType>();
+    
+    // Constructor
+    
+    public Snapshot(Database database)
+    {
+        this.database = database;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Number of players in the last export or import
+    
+    public int getPlayerCount()
+    {
+        return playerCount;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Number of iptable records in the last export or import
+    
+    public int getRecordCount()
+    {
+        return recordCount;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Write the database to a snapshot file. Throws an exception on error.
+    
+    public void export(File file) throws IOException
+    {
+        playerCount = 0;
+        recordCount = 0;
+        
+        // Players are read first so records can refer to them by index
+        
+        final List<PlayertableType> players = new ArrayList<PlayertableType>();
+        if (!database.streamPlayertable(BATCH_SIZE, batch -> players.addAll(batch)))
+        {
+            throw new IOException("unable to read playertable");
+        }
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            final ChannelWriter out = new ChannelWriter(channel);
+            
+            out.putInt(MAGIC);
+            out.putShort(VERSION);
+            out.putInt(players.size());
+            
+            final Map<String, Integer> playerIndex = new HashMap<String, Integer>();
+            for (PlayertableType pt : players)
+            {
+                UUID uuid = UUID.fromString(pt.uuid);
+                out.putLong(uuid.getMostSignificantBits());
+                out.putLong(uuid.getLeastSignificantBits());
+                out.putString(pt.name);
+                playerIndex.put(pt.uuid, playerIndex.size());
+            }
+            playerCount = players.size();
+            players.clear();
+            
+            // Records
+            
+            final Map<String, Integer> ipIndex = new HashMap<String, Integer>();
+            final long[] lastDate = {0};
+            final IOException[] error = {null};
+            
+            boolean success = database.streamIptable(BATCH_SIZE, batch ->
+            {
+                try
+                {
+                    for (IptableType ipt : batch)
+                    {
+                        if (error[0] != null)
+                        {
+                            return;
+                        }
+                        Integer player = playerIndex.get(ipt.uuid);
+                        if (player == null)
+                        {
+                            // Added after playertable was read
+                            continue;
+                        }
+                        out.putVarLong(player + 1);
+                        
+                        Integer ip = ipIndex.get(ipt.ipaddr);
+                        if (ip == null)
+                        {
+                            out.putVarLong(0);
+                            out.putAddress(ipt.ipaddr);
+                            ipIndex.put(ipt.ipaddr, ipIndex.size());
+                        }
+                        else
+                        {
+                            out.putVarLong(ip + 1);
+                        }
+                        
+                        long delta = ipt.unixdate - lastDate[0];
+                        out.putVarLong((delta << 1) ^ (delta >> 63)); // zigzag
+                        lastDate[0] = ipt.unixdate;
+                        ++recordCount;
+                    }
+                }
+                catch (IOException e)
+                {
+                    error[0] = e;
+                }
+            });
+            
+            if (error[0] != null)
+            {
+                throw error[0];
+            }
+            if (!success)
+            {
+                throw new IOException("unable to read iptable");
+            }
+            
+            out.putVarLong(0); // end of records
+            out.flush(); // so the CRC includes everything written
+            out.putInt((int)out.crc.getValue());
+            out.flush();
+            channel.force(true);
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Load a snapshot file into the database, which must be empty. The whole
+    // file is checked before anything is inserted. If an insert fails, the
+    // players from the file which were already inserted are deleted again,
+    // with their entries. Joins recorded during the import by players who
+    // aren't in the file are kept. Throws an exception on error.
+    
+    public void load(File file) throws IOException
+    {
+        playerCount = 0;
+        recordCount = 0;
+        
+        long count = database.countPlayertableEntries();
+        if (count < 0)
+        {
+            throw new IOException("unable to read playertable");
+        }
+        if (count > 0)
+        {
+            throw new IOException("the database is not empty");
+        }
+        
+        // First pass, check the file
+        read(file, false);
+        
+        // Second pass, insert
+        inserted.clear();
+        try
+        {
+            read(file, true);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            playerCount = 0;
+            recordCount = 0;
+            database.deletePlayers(inserted);
+            throw e;
+        }
+        finally
+        {
+            inserted.clear();
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Read the snapshot file, inserting into the database if insert is true
+    
+    private void read(File file, boolean insert) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ChannelReader in = new ChannelReader(channel);
+            
+            if (in.getInt() != MAGIC)
+            {
+                throw new IOException("not a snapshot file");
+            }
+            short version = in.getShort();
+            if (version != VERSION)
+            {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            
+            // Players
+            
+            int players = in.getInt();
+            if (players < 0)
+            {
+                throw new IOException("invalid player count");
+            }
+            String[] uuids = new String[players];
+            List<PlayertableType> playerBatch = new ArrayList<PlayertableType>(BATCH_SIZE);
+            
+            for (int i = 0; i < players; ++i)
+            {
+                uuids[i] = new UUID(in.getLong(), in.getLong()).toString();
+                String name = in.getString();
+                if (insert)
+                {
+                    PlayertableType pt = database.new PlayertableType();
+                    pt.uuid = uuids[i];
+                    pt.name = name;
+                    playerBatch.add(pt);
+                    if (playerBatch.size() >= BATCH_SIZE)
+                    {
+                        insertPlayers(playerBatch);
+                    }
+                }
+            }
+            if (insert)
+            {
+                insertPlayers(playerBatch);
+                playerCount = players;
+            }
+            
+            // Records
+            
+            List<String> ips = new ArrayList<String>();
+            List<IptableType> recordBatch = new ArrayList<IptableType>(BATCH_SIZE);
+            long date = 0;
+            
+            long player = in.getVarLong();
+            while (player != 0)
+            {
+                if (player > players)
+                {
+                    throw new IOException("invalid player index");
+                }
+                
+                String ipaddr;
+                long ip = in.getVarLong();
+                if (ip == 0)
+                {
+                    ipaddr = in.getAddress();
+                    ips.add(ipaddr);
+                }
+                else if (ip <= ips.size())
+                {
+                    ipaddr = ips.get((int)ip - 1);
+                }
+                else
+                {
+                    throw new IOException("invalid IP index");
+                }
+                
+                long zigzag = in.getVarLong();
+                date += (zigzag >>> 1) ^ -(zigzag & 1);
+                
+                if (insert)
+                {
+                    IptableType ipt = database.new IptableType();
+                    ipt.ipaddr = ipaddr;
+                    ipt.uuid = uuids[(int)player - 1];
+                    ipt.unixdate = date;
+                    recordBatch.add(ipt);
+                    if (recordBatch.size() >= BATCH_SIZE)
+                    {
+                        insertRecords(recordBatch);
+                    }
+                    ++recordCount;
+                }
+                
+                player = in.getVarLong();
+            }
+            if (insert)
+            {
+                insertRecords(recordBatch);
+            }
+            
+            // Check the CRC
+            
+            int crc = (int)in.crc.getValue();
+            if (in.getInt() != crc)
+            {
+                throw new IOException("snapshot file is corrupt");
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Insert a batch of players and clear the list. The batch is remembered
+    // first, since a failed batch may still have inserted some of them.
+    
+    private void insertPlayers(List<PlayertableType> batch) throws IOException
+    {
+        inserted.addAll(batch);
+        if (!batch.isEmpty() && !database.addPlayertableEntries(batch))
+        {
+            throw new IOException("unable to insert into playertable");
+        }
+        batch.clear();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Insert a batch of iptable records and clear the list
+    
+    private void insertRecords(List<IptableType> batch) throws IOException
+    {
+        if (!batch.isEmpty() && !database.addIptableEntries(batch))
+        {
+            throw new IOException("unable to insert into iptable");
+        }
+        batch.clear();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Buffered writer for a FileChannel, which keeps a running CRC
+    
+    private static class ChannelWriter
+    {
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        
+        ChannelWriter(FileChannel channel)
+        {
+            this.channel = channel;
+        }
+        
+        // Make room for n bytes
+        private void ensure(int n) throws IOException
+        {
+            if (buffer.remaining() < n)
+            {
+                flush();
+            }
+        }
+        
+        void flush() throws IOException
+        {
+            buffer.flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        void putInt(int value) throws IOException
+        {
+            ensure(4);
+            buffer.putInt(value);
+        }
+        
+        void putShort(short value) throws IOException
+        {
+            ensure(2);
+            buffer.putShort(value);
+        }
+        
+        void putLong(long value) throws IOException
+        {
+            ensure(8);
+            buffer.putLong(value);
+        }
+        
+        void putVarLong(long value) throws IOException
+        {
+            ensure(10);
+            while ((value & ~0x7FL) != 0)
+            {
+                buffer.put((byte)((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte)value);
+        }
+        
+        void putString(String value) throws IOException
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Short.MAX_VALUE)
+            {
+                throw new IOException("string too long");
+            }
+            ensure(2 + bytes.length);
+            buffer.putShort((short)bytes.length);
+            buffer.put(bytes);
+        }
+        
+        void putAddress(String ipaddr) throws IOException
+        {
+            byte[] binary = IpAddress.toBinary(ipaddr);
+            if (binary != null)
+            {
+                ensure(1 + binary.length);
+                buffer.put((byte)binary.length);
+                buffer.put(binary);
+            }
+            else
+            {
+                ensure(1);
+                buffer.put((byte)0);
+                putString(ipaddr);
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Buffered reader for a FileChannel, which keeps a running CRC of the bytes
+    // consumed
+    
+    private static class ChannelReader
+    {
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        
+        ChannelReader(FileChannel channel)
+        {
+            this.channel = channel;
+            buffer.flip(); // start empty
+        }
+        
+        // Make sure n bytes are in the buffer
+        private void require(int n) throws IOException
+        {
+            if (buffer.remaining() < n)
+            {
+                buffer.compact();
+                while (buffer.position() < n)
+                {
+                    if (channel.read(buffer) < 0)
+                    {
+                        throw new EOFException("unexpected end of snapshot file");
+                    }
+                }
+                buffer.flip();
+            }
+        }
+        
+        // Add the n bytes before the current position to the CRC
+        private void consumed(int n)
+        {
+            crc.update(buffer.array(), buffer.position() - n, n);
+        }
+        
+        int getInt() throws IOException
+        {
+            require(4);
+            int value = buffer.getInt();
+            consumed(4);
+            return value;
+        }
+        
+        short getShort() throws IOException
+        {
+            require(2);
+            short value = buffer.getShort();
+            consumed(2);
+            return value;
+        }
+        
+        long getLong() throws IOException
+        {
+            require(8);
+            long value = buffer.getLong();
+            consumed(8);
+            return value;
+        }
+        
+        byte getByte() throws IOException
+        {
+            require(1);
+            byte value = buffer.get();
+            consumed(1);
+            return value;
+        }
+        
+        long getVarLong() throws IOException
+        {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7)
+            {
+                byte b = getByte();
+                value |= (long)(b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("invalid varint");
+        }
+        
+        String getString() throws IOException
+        {
+            int length = getShort();
+            if (length < 0)
+            {
+                throw new IOException("invalid string length");
+            }
+            require(length);
+            String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            consumed(length);
+            return value;
+        }
+        
+        String getAddress() throws IOException
+        {
+            int length = getByte();
+            if (length == 0)
+            {
+                return getString();
+            }
+            if (length != 4 && length != 16)
+            {
+                throw new IOException("invalid IP address length");
+            }
+            require(length);
+            byte[] binary = new byte[length];
+            buffer.get(binary);
+            consumed(length);
+            return IpAddress.toString(binary);
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Append-only file of joins which couldn't be written to the database. Each
+// join is one line of text:
+//
+//   unixdate <tab> ipaddr <tab> uuid <tab> name
+//
+// Appends are not forced to disk one by one. sync() is called about once a
+// second, so a crash loses at most that much. An incomplete last line from a
+// crash is skipped.
+//
+// For a replay, the file is renamed to the replay file and a new spool file
+// is started, so joins can still be appended during the replay. Progress is
+// saved by rewriting the replay file with the joins not yet replayed.
+//
+// The methods are synchronized, since joins are appended by async threads.
+
+class Spool
+{
+    private final File file;
+    private final File replayFile;
+    private FileChannel channel;
+    private boolean dirty = false;
+    
+    // A join which couldn't be written to the database
+    
+    static class JoinRecord
+    {
+        long unixdate;
+        String ipaddr;
+        String uuid;
+        String name;
+    }
+    
+    // Constructor. Opens the spool file for appending.
+    
+    Spool(File file) throws IOException
+    {
+        this.file = file;
+        this.replayFile = new File(file.getPath() + ".replay");
+        open();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Open the spool file for appending. If the last line is incomplete
+    // after a crash, it is ended so the next join starts on a new line.
+    
+    private void open() throws IOException
+    {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        channel.position(size);
+        if (size > 0)
+        {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            if (last.get(0) != '\n')
+            {
+                channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+                channel.force(false);
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Append a join
+    
+    synchronized void append(JoinRecord record) throws IOException
+    {
+        if (!channel.isOpen())
+        {
+            throw new IOException("spool file is closed");
+        }
+        String line = record.unixdate + "\t" + record.ipaddr + "\t" + record.uuid + "\t" + record.name + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        dirty = true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Force appended joins to disk
+    
+    synchronized void sync() throws IOException
+    {
+        if (dirty)
+        {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns true if there are joins to replay
+    
+    synchronized boolean hasPending() throws IOException
+    {
+        return replayFile.exists() || (channel.size() > 0);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Get the joins to replay. If a previous replay didn't finish, its joins
+    // are returned. Otherwise the spool file becomes the replay file.
+    
+    synchronized List<JoinRecord> startReplay() throws IOException
+    {
+        if (!replayFile.exists())
+        {
+            sync();
+            channel.close();
+            Files.move(file.toPath(), replayFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            open();
+        }
+        return read(replayFile);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Save the progress of a replay. remaining are the joins not yet replayed.
+    
+    synchronized void saveReplay(List<JoinRecord> remaining) throws IOException
+    {
+        if (remaining.isEmpty())
+        {
+            Files.deleteIfExists(replayFile.toPath());
+            return;
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        for (JoinRecord record : remaining)
+        {
+            sb.append(record.unixdate).append('\t').append(record.ipaddr).append('\t').append(record.uuid).append('\t').append(record.name).append('\n');
+        }
+        File tmpFile = new File(replayFile.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining())
+            {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        Files.move(tmpFile.toPath(), replayFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Close the spool file
+    
+    synchronized void close() throws IOException
+    {
+        sync();
+        channel.close();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Read joins from a file. Only lines ending with a newline are complete.
+    
+    private static List<JoinRecord> read(File file) throws IOException
+    {
+        List<JoinRecord> records = new ArrayList<JoinRecord>();
+        
+        String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        text = text.substring(0, text.lastIndexOf('\n') + 1);
+        
+        for (String line : text.split("\n"))
+        {
+            String[] fields = line.split("\t");
+            if (fields.length != 4)
+            {
+                continue;
+            }
+            try
+            {
+                JoinRecord record = new JoinRecord();
+                record.unixdate = Long.parseLong(fields[0]);
+                record.ipaddr = fields[1];
+                record.uuid = fields[2];
+                record.name = fields[3];
+                records.add(record);
+            }
+            catch (NumberFormatException e)
+            {
+                // Damaged line
+            }
+        }
+        
+        return records;
+    }
+
+}
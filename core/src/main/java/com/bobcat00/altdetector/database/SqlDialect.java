@@ -0,0 +1,346 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// This class builds the SQL statements for one type of database. The
+// statements shared by all databases are built here from small pieces that
+// each dialect provides, such as how to get the current time. A dialect can
+// also provide statements with no equivalent in the others, such as an upsert,
+// or a DELETE with a LIMIT. Those return null if the database doesn't have
+// them, and Database uses a portable sequence of statements instead.
+//
+// The shared statements are built in the constructor, so the methods providing
+// the pieces must not use fields of the subclass.
+//
+// Servers sharing a MySQL database can partition iptable by realm. Each row is
+// written with the realm of the server that wrote it. Reads and purges see
+// only the server's own realm, or every realm if network is true.
+
+abstract class SqlDialect
+{
+    final String prefix;
+    final String realm; // null if iptable isn't partitioned
+    final boolean network;
+    
+    private final String getAllNames;
+    private final String purgeByDate1;
+    private final String purgeByDate2;
+    private final String purgeByName;
+    private final String countByName;
+    private final String purgeOrphansByName;
+    private final String getNameByUuid;
+    private final String addPlayerEntry;
+    private final String updatePlayerEntry;
+    private final String checkIpEntry;
+    private final String addIpEntry;
+    private final String updateIpEntry;
+    private final String addIpWithDate;
+    private final String updateIpWithDate;
+    private final String getAlts;
+    private final String getAltsWithUuid;
+    private final String getAltsWithIp;
+    private final String getIpsByUuid;
+    private final String getLastJoin;
+    private final String getOfflinePlayer;
+    private final String getPlayertable;
+    private final String getIptable;
+    private final String countPlayers;
+    private final String deleteIpByUuid;
+    private final String deletePlayerByUuid;
+    private final String getGeneration;
+    private final String nextGeneration;
+    private final String addChange;
+    private final String getChanges;
+    private final String getLastChange;
+    private final String purgeChanges;
+    
+    // Multi-row inserts, by number of rows
+    private final Map<Integer, String> addPlayerEntries = new ConcurrentHashMap<Integer, String>();
+    private final Map<Integer, String> addIpEntriesWithDate = new ConcurrentHashMap<Integer, String>();
+    
+    // Constructor
+    
+    SqlDialect(String prefix)
+    {
+        this(prefix, null, true);
+    }
+    
+    // Constructor for a partitioned iptable. The realm must contain only
+    // characters which are safe in an SQL string literal.
+    
+    SqlDialect(String prefix, String realm, boolean network)
+    {
+        this.prefix = prefix;
+        this.realm = realm;
+        this.network = network;
+        
+        getAllNames       = sql("SELECT DISTINCT name FROM {prefix}playertable;");
+        purgeByDate1      = sql("DELETE FROM {prefix}iptable WHERE date < " + cutoff() + scopedRows() + ";");
+        purgeByDate2      = sql("DELETE FROM {prefix}playertable WHERE id NOT IN (SELECT playerid FROM {prefix}iptable);");
+        purgeByName       = sql(scopedRows().isEmpty() ? "DELETE FROM {prefix}playertable WHERE lower(name) = lower(?);"
+                                               : "DELETE FROM {prefix}iptable WHERE playerid IN (SELECT id FROM {prefix}playertable WHERE lower(name) = lower(?))" + scopedRows() + ";");
+        countByName       = scopedRows().isEmpty() ? null : sql("SELECT COUNT(DISTINCT playerid) FROM {prefix}iptable WHERE playerid IN (SELECT id FROM {prefix}playertable WHERE lower(name) = lower(?))" + scopedRows() + ";");
+        purgeOrphansByName = sql("DELETE FROM {prefix}playertable WHERE lower(name) = lower(?) AND NOT EXISTS (SELECT 1 FROM {prefix}iptable WHERE {prefix}iptable.playerid = {prefix}playertable.id);");
+        getNameByUuid     = sql("SELECT name FROM {prefix}playertable WHERE uuid = ?;");
+        addPlayerEntry    = sql("INSERT INTO {prefix}playertable (uuid, name) VALUES (?, ?);");
+        updatePlayerEntry = sql("UPDATE {prefix}playertable SET name = ? WHERE uuid = ?;");
+        checkIpEntry      = sql("SELECT EXISTS (SELECT 1 FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE ipaddr = ? AND uuid = ?" + ownRows() + ");");
+        addIpEntry        = sql("INSERT INTO {prefix}iptable (" + ipColumns() + ") VALUES (?, (SELECT id FROM {prefix}playertable WHERE uuid = ?), " + now() + realmValue() + ");");
+        updateIpEntry     = sql("UPDATE {prefix}iptable SET date = " + now() + " WHERE ipaddr = ? AND playerid = (SELECT id FROM {prefix}playertable WHERE uuid = ?)" + ownRows() + ";");
+        addIpWithDate     = sql("INSERT INTO {prefix}iptable (" + ipColumns() + ") VALUES " + ipRowWithDate() + ";");
+        updateIpWithDate  = sql("UPDATE {prefix}iptable SET date = " + fromUnixTime() + " WHERE ipaddr = ? AND playerid = (SELECT id FROM {prefix}playertable WHERE uuid = ?) AND date < " + fromUnixTime() + ownRows() + ";");
+        getAlts           = sql("SELECT DISTINCT name FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE ipaddr IN (SELECT ipaddr FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE uuid = ?" + scopedRows() + ") AND uuid <> ? AND date >= " + cutoff() + scopedRows() + " ORDER BY lower(name);");
+        getAltsWithUuid   = sql("SELECT DISTINCT name, uuid FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE ipaddr IN (SELECT ipaddr FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE uuid = ?" + scopedRows() + ") AND uuid <> ? AND date >= " + cutoff() + scopedRows() + " ORDER BY lower(name);");
+        getAltsWithIp     = sql("SELECT DISTINCT name, uuid FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE (ipaddr IN (SELECT ipaddr FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE uuid = ?" + scopedRows() + ") OR ipaddr = ?) AND uuid <> ? AND date >= " + cutoff() + scopedRows() + " ORDER BY lower(name);");
+        getIpsByUuid      = sql("SELECT ipaddr, name FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE uuid = ?" + scopedRows() + ";");
+        getLastJoin       = sql("SELECT " + toUnixTime("MAX(date)") + " FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE uuid = ?;");
+        getOfflinePlayer  = sql("SELECT uuid, name FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id WHERE lower(name) = lower(?)" + scopedRows() + " ORDER BY date DESC LIMIT 1;");
+        getPlayertable    = sql("SELECT name, uuid FROM {prefix}playertable;");
+        countPlayers      = sql("SELECT COUNT(*) FROM {prefix}playertable;");
+        deleteIpByUuid    = sql("DELETE FROM {prefix}iptable WHERE playerid = (SELECT id FROM {prefix}playertable WHERE uuid = ?)" + ownRows() + ";");
+        deletePlayerByUuid = sql("DELETE FROM {prefix}playertable WHERE uuid = ? AND id NOT IN (SELECT playerid FROM {prefix}iptable);");
+        getIptable        = sql("SELECT ipaddr, uuid, " + toUnixTime("date") + " FROM {prefix}iptable INNER JOIN {prefix}playertable ON {prefix}iptable.playerid = {prefix}playertable.id" + (network ? "" : " WHERE {prefix}iptable.realm = " + literal(realm)) + ";");
+        getGeneration     = sql("SELECT (SELECT MAX(id) FROM {prefix}playertable), (SELECT MAX(id) FROM {prefix}iptable), (SELECT counter FROM {prefix}generation WHERE id = 1);");
+        nextGeneration    = sql("UPDATE {prefix}generation SET counter = counter + 1 WHERE id = 1;");
+        addChange         = sql("INSERT INTO {prefix}changelog (server, realm, kind, uuid, name, ipaddr, date) VALUES (?, " + literal(realm) + ", ?, ?, ?, ?, " + now() + ");");
+        getChanges        = sql("SELECT id, server, kind, uuid, name, ipaddr, " + toUnixTime("date") + " FROM {prefix}changelog WHERE id > ?" + (network ? "" : " AND realm = " + literal(realm)) + " ORDER BY id LIMIT ?;");
+        getLastChange     = sql("SELECT MAX(id) FROM {prefix}changelog;");
+        purgeChanges      = sql("DELETE FROM {prefix}changelog WHERE date < " + cutoff() + ";");
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Replace {prefix} in SQL statements
+    
+    String sql(String statement)
+    {
+        return statement.replace("{prefix}", prefix);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Returns true if a version string such as 8.0.36 or 10.11.6-MariaDB is at
+    // least the required version
+    
+    static boolean versionAtLeast(String version, int... required)
+    {
+        String[] parts = version.split("[^0-9]+");
+        for (int i = 0; i < required.length; ++i)
+        {
+            int part = 0;
+            if (i < parts.length && !parts[i].isEmpty())
+            {
+                try
+                {
+                    part = Integer.parseInt(parts[i]);
+                }
+                catch (NumberFormatException e)
+                {
+                    return false;
+                }
+            }
+            if (part != required[i])
+            {
+                return part > required[i];
+            }
+        }
+        return true;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Pieces provided by each dialect
+    
+    // Statements to create the tables and indexes
+    abstract List<String> createTables();
+    
+    // Query returning the database version in a column named version
+    abstract String sqlVersion();
+    
+    // Expression for the current date and time
+    abstract String now();
+    
+    // Expression for the current date and time minus the expiration time,
+    // which is a parameter formatted by formatExpirationTime
+    abstract String cutoff();
+    
+    // Expression converting a parameter in Unix seconds to a date and time
+    abstract String fromUnixTime();
+    
+    // Expression converting a date and time column to Unix seconds
+    abstract String toUnixTime(String column);
+    
+    // Format the expiration time parameter used by cutoff()
+    abstract String formatExpirationTime(int expirationTime);
+    
+    // Largest number of rows in one multi-row insert
+    abstract int maxInsertRows();
+    
+    // -------------------------------------------------------------------------
+    
+    // Optional statements, null if the dialect doesn't have them
+    
+    // Insert a player or update the name of an existing player in one
+    // statement. Parameters are uuid and name.
+    String upsertPlayerEntry()
+    {
+        return null;
+    }
+    
+    // Statements to create the changelog table, which lets servers sharing
+    // the database see each other's writes
+    List<String> createChangelog()
+    {
+        return null;
+    }
+    
+    // Query returning the number of realm columns in iptable, and the
+    // statements adding the column to an iptable created without it
+    String countRealmColumns()
+    {
+        return null;
+    }
+    
+    List<String> addRealmColumn()
+    {
+        return null;
+    }
+    
+    // purgeByDate1 deleting at most ? rows, so a large purge can be done in
+    // steps which each hold locks briefly
+    String purgeByDateLimited()
+    {
+        return null;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Realm as an SQL string literal, an empty string if there's none
+    
+    static String literal(String realm)
+    {
+        return "'" + ((realm != null) ? realm : "") + "'";
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Condition selecting the iptable rows written by this server's realm, for
+    // the statements which check and update this server's entries
+    
+    private String ownRows()
+    {
+        return (realm != null) ? " AND {prefix}iptable.realm = " + literal(realm) : "";
+    }
+    
+    // Condition selecting the iptable rows seen by reads and purges
+    
+    String scopedRows()
+    {
+        return network ? "" : ownRows();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Columns written by iptable inserts, and the realm value ending each row
+    
+    private String ipColumns()
+    {
+        return "ipaddr, playerid, date" + ((realm != null) ? ", realm" : "");
+    }
+    
+    private String realmValue()
+    {
+        return (realm != null) ? ", " + literal(realm) : "";
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // One row of iptable values with a date in Unix seconds
+    
+    private String ipRowWithDate()
+    {
+        return "(?, (SELECT id FROM {prefix}playertable WHERE uuid = ?), " + fromUnixTime() + realmValue() + ")";
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Build a multi-row insert from its start and one row of values
+    
+    private String multiRow(String start, String row, int rows)
+    {
+        StringBuilder sb = new StringBuilder(start);
+        for (int i = 0; i < rows; ++i)
+        {
+            sb.append((i == 0) ? " " : ", ").append(row);
+        }
+        return sql(sb.append(";").toString());
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Statements
+    
+    String getAllNames()       { return getAllNames; }
+    String purgeByDate1()      { return purgeByDate1; }
+    String purgeByDate2()      { return purgeByDate2; }
+    String purgeByName()       { return purgeByName; }
+    String countByName()       { return countByName; } // null if purgeByName deletes players
+    String purgeOrphansByName() { return purgeOrphansByName; }
+    String getNameByUuid()     { return getNameByUuid; }
+    String addPlayerEntry()    { return addPlayerEntry; }
+    String updatePlayerEntry() { return updatePlayerEntry; }
+    String checkIpEntry()      { return checkIpEntry; }
+    String addIpEntry()        { return addIpEntry; }
+    String updateIpEntry()     { return updateIpEntry; }
+    String addIpWithDate()     { return addIpWithDate; }
+    String updateIpWithDate()  { return updateIpWithDate; }
+    String getAlts()           { return getAlts; }
+    String getAltsWithUuid()   { return getAltsWithUuid; }
+    String getAltsWithIp()     { return getAltsWithIp; }
+    String getIpsByUuid()      { return getIpsByUuid; }
+    String getLastJoin()       { return getLastJoin; }
+    String getOfflinePlayer()  { return getOfflinePlayer; }
+    String getPlayertable()    { return getPlayertable; }
+    String getIptable()        { return getIptable; }
+    String countPlayers()      { return countPlayers; }
+    String deleteIpByUuid()    { return deleteIpByUuid; }
+    String deletePlayerByUuid() { return deletePlayerByUuid; }
+    String getGeneration()     { return getGeneration; }
+    String nextGeneration()    { return nextGeneration; }
+    String addChange()         { return addChange; }
+    String getChanges()        { return getChanges; }
+    String getLastChange()     { return getLastChange; }
+    String purgeChanges()      { return purgeChanges; }
+    
+    // Insert rows playertable entries. Parameters are uuid and name for each row.
+    String addPlayerEntries(int rows)
+    {
+        return addPlayerEntries.computeIfAbsent(rows, n -> multiRow("INSERT INTO {prefix}playertable (uuid, name) VALUES", "(?, ?)", n));
+    }
+    
+    // Insert rows iptable entries. Parameters are ipaddr, uuid and Unix date
+    // for each row.
+    String addIpEntriesWithDate(int rows)
+    {
+        return addIpEntriesWithDate.computeIfAbsent(rows, n -> multiRow("INSERT INTO {prefix}iptable (" + ipColumns() + ") VALUES", ipRowWithDate(), n));
+    }
+
+}
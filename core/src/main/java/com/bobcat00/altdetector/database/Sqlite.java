@@ -19,32 +19,22 @@ package com.bobcat00.altdetector.database;
 import java.io.File;
 import java.io.IOException;
 
-import com.bobcat00.altdetector.AltDetector;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
-// This class is used to access the SQLite database. It creates the SQL statements.
+// This class is used to access the SQLite database. The SQL statements are in
+// SqliteDialect.
 
 public class Sqlite extends Database
 {
-    // SQL statements to create the required tables. The foreign key constraint means:
-    // 1. Inserts into iptable must have a valid playerid referencing playertable
-    // 2. Deletes from playertable will also delete referenced entries in iptable
-    
-    private String[] sqlInit = {
-        "CREATE TABLE IF NOT EXISTS playertable (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, uuid CHAR(36) UNIQUE NOT NULL, name VARCHAR(255) NOT NULL);",
-        "CREATE TABLE IF NOT EXISTS iptable (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, ipaddr VARCHAR(255) NOT NULL, playerid INTEGER NOT NULL REFERENCES playertable(id) ON DELETE CASCADE, date DATETIME NOT NULL);",
-        "CREATE UNIQUE INDEX IF NOT EXISTS uuid_index ON playertable(uuid);",
-        "CREATE INDEX IF NOT EXISTS ipaddr_index ON iptable(ipaddr);",
-        "CREATE INDEX IF NOT EXISTS playerid_index ON iptable(playerid);"};
-    
     private String dbFilename;
     
     // Constructor
     
-    public Sqlite(AltDetector plugin, boolean debug, String prefix)
+    public Sqlite(Platform plugin, boolean debug, String prefix)
     {
         super(plugin, debug, prefix);
+        dialect = new SqliteDialect(prefix, false);
     }
     
     // -------------------------------------------------------------------------
@@ -58,15 +48,6 @@ public class Sqlite extends Database
     
     // -------------------------------------------------------------------------
     
-    // Formats the expiration time as required by SQLite
-    
-    String formatExpirationTime(int expirationTime)
-    {
-        return "-" + expirationTime + " days"; // negative value
-    }
-    
-    // -------------------------------------------------------------------------
-    
     // Initialize the database. Call after creating an instance of this class.
     
     public boolean initialize()
@@ -98,18 +79,16 @@ public class Sqlite extends Database
         hikariConfig.setConnectionInitSql("PRAGMA foreign_keys = ON");
         dataSource = new HikariDataSource(hikariConfig);
         
-        // Send initial SQL statements
+        // Upserts need SQLite 3.24.0 or later
         
-        for (String sql : sqlInit)
+        if (SqlDialect.versionAtLeast(getSqlVersion(), 3, 24))
         {
-            boolean success = executeStatement(sql);
-            if (!success)
-            {
-                return false;
-            }
+            dialect = new SqliteDialect(prefix, true);
         }
         
-        return true;
+        // Send initial SQL statements
+        
+        return createTables();
     }
     
 }
@@ -0,0 +1,100 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.util.Arrays;
+import java.util.List;
+
+// SQL statements for SQLite
+
+class SqliteDialect extends SqlDialect
+{
+    private final boolean upsert;
+    
+    // Constructor. Upserts need SQLite 3.24.0 or later.
+    
+    SqliteDialect(String prefix, boolean upsert)
+    {
+        super(prefix);
+        this.upsert = upsert;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The foreign key constraint means:
+    // 1. Inserts into iptable must have a valid playerid referencing playertable
+    // 2. Deletes from playertable will also delete referenced entries in iptable
+    //
+    // The generation table has a single row, whose counter is incremented by
+    // changes which don't add a row to the other tables.
+    
+    List<String> createTables()
+    {
+        return Arrays.asList(
+            sql("CREATE TABLE IF NOT EXISTS {prefix}playertable (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, uuid CHAR(36) UNIQUE NOT NULL, name VARCHAR(255) NOT NULL);"),
+            sql("CREATE TABLE IF NOT EXISTS {prefix}iptable (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, ipaddr VARCHAR(255) NOT NULL, playerid INTEGER NOT NULL REFERENCES {prefix}playertable(id) ON DELETE CASCADE, date DATETIME NOT NULL);"),
+            sql("CREATE UNIQUE INDEX IF NOT EXISTS uuid_index ON {prefix}playertable(uuid);"),
+            sql("CREATE INDEX IF NOT EXISTS ipaddr_index ON {prefix}iptable(ipaddr);"),
+            sql("CREATE INDEX IF NOT EXISTS playerid_index ON {prefix}iptable(playerid);"),
+            sql("CREATE TABLE IF NOT EXISTS {prefix}generation (id INTEGER PRIMARY KEY NOT NULL, counter BIGINT NOT NULL);"),
+            sql("INSERT OR IGNORE INTO {prefix}generation (id, counter) VALUES (1, 0);"));
+    }
+    
+    String sqlVersion()
+    {
+        return "SELECT sqlite_version() AS version;";
+    }
+    
+    String now()
+    {
+        return "datetime('now')";
+    }
+    
+    String cutoff()
+    {
+        return "datetime('now', ?)";
+    }
+    
+    String fromUnixTime()
+    {
+        return "datetime(?, 'unixepoch')";
+    }
+    
+    String toUnixTime(String column)
+    {
+        return "strftime('%s'," + column + ")";
+    }
+    
+    String formatExpirationTime(int expirationTime)
+    {
+        return "-" + expirationTime + " days"; // negative value
+    }
+    
+    // Older versions of SQLite allow at most 999 parameters in a statement
+    int maxInsertRows()
+    {
+        return 250;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    String upsertPlayerEntry()
+    {
+        return upsert ? sql("INSERT INTO {prefix}playertable (uuid, name) VALUES (?, ?) ON CONFLICT(uuid) DO UPDATE SET name = excluded.name;") : null;
+    }
+
+}
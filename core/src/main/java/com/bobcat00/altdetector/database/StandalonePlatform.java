@@ -0,0 +1,181 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+// Platform for running the database outside a server, in tools and
+// benchmarks. The settings use the config.yml names, such as mysql.hostname,
+// and missing ones have the config.yml defaults.
+
+public class StandalonePlatform implements Platform, DatabaseConfig
+{
+    private Logger logger = Logger.getLogger("AltDetector");
+    private File dataFolder;
+    private Properties settings;
+    
+    // Constructor
+    
+    public StandalonePlatform(File dataFolder, Properties settings)
+    {
+        this.dataFolder = dataFolder;
+        this.settings = settings;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Create and initialize the database in the settings. Returns null if it
+    // can't be initialized.
+    
+    public Database openDatabase()
+    {
+        Database database = Database.create(this, getDatabaseType(), getSqlDebug(), getMysqlPrefix());
+        if (!database.initialize())
+        {
+            database.closeDataSource();
+            return null;
+        }
+        return database;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Settings
+    
+    private String getString(String key, String def)
+    {
+        return settings.getProperty(key, def);
+    }
+    
+    private int getInt(String key, int def)
+    {
+        String value = settings.getProperty(key);
+        return (value != null) ? Integer.parseInt(value.trim()) : def;
+    }
+    
+    public String getDatabaseType()
+    {
+        return getString("database-type", "sqlite");
+    }
+    
+    public boolean getSqlDebug()
+    {
+        return Boolean.parseBoolean(getString("sql-debug", "false"));
+    }
+    
+    public String getMysqlPrefix()
+    {
+        return getString("mysql.prefix", "altdetector_");
+    }
+    
+    public String getMysqlHostname()
+    {
+        return getString("mysql.hostname", "127.0.0.1");
+    }
+    
+    public String getMysqlUsername()
+    {
+        return getString("mysql.username", "username");
+    }
+    
+    public String getMysqlPassword()
+    {
+        return getString("mysql.password", "password");
+    }
+    
+    public String getMysqlDatabase()
+    {
+        return getString("mysql.database", "database");
+    }
+    
+    public int getMysqlPort()
+    {
+        return getInt("mysql.port", 3306);
+    }
+    
+    public String getJdbcurlProperties()
+    {
+        return getString("mysql.jdbcurl-properties", "");
+    }
+    
+    public String getMysqlReplicaHostname()
+    {
+        return getString("mysql.replica-hostname", "");
+    }
+    
+    public int getMysqlReplicaPort()
+    {
+        return getInt("mysql.replica-port", 3306);
+    }
+    
+    public int getMysqlReplicaPinSeconds()
+    {
+        return getInt("mysql.replica-pin-seconds", 5);
+    }
+    
+    public String getMysqlRealm()
+    {
+        return getString("mysql.realm", "");
+    }
+    
+    public boolean isMysqlNetworkScope()
+    {
+        return getString("mysql.scope", "realm").equalsIgnoreCase("network");
+    }
+    
+    public int getDateGranularityMinutes()
+    {
+        return getInt("date-granularity-minutes", 60);
+    }
+    
+    public String getPlaceholderSeparator()
+    {
+        return getString("placeholder-separator", " ");
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Platform
+    
+    public Logger getLogger()
+    {
+        return logger;
+    }
+    
+    public File getDataFolder()
+    {
+        return dataFolder;
+    }
+    
+    public DatabaseConfig getDatabaseConfig()
+    {
+        return this;
+    }
+    
+    public int getExpirationTime()
+    {
+        return getInt("expiration-time", 60);
+    }
+    
+    public boolean isPlaceholderEnabled()
+    {
+        return Boolean.parseBoolean(getString("placeholder-enabled", "false"));
+    }
+
+}
@@ -0,0 +1,150 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Tests that the index cache file gives back what was saved, and only for the
+// same generation stamp
+
+public class IndexCacheTest
+{
+    @TempDir
+    File folder;
+    
+    private static final List<String> PLAYERS = Arrays.asList("alice", "bob", "carol");
+    
+    // -------------------------------------------------------------------------
+    
+    private static AltCache.Contents altList()
+    {
+        AltCache.Contents altList = new AltCache.Contents();
+        altList.names = new String[] {"Alice", "Bob", "Carol"};
+        altList.alts = new int[][] {{1, 2}, null, {0}};
+        return altList;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // The player list and alt list are read back unchanged
+    
+    @Test
+    public void roundTrip() throws IOException
+    {
+        File file = new File(folder, "indexes.dat");
+        IndexCache.save(file, "stamp1", PLAYERS, altList());
+        
+        List<String> players = new ArrayList<String>();
+        AltCache.Contents altList = new AltCache.Contents();
+        assertTrue(IndexCache.load(file, "stamp1", players, altList));
+        assertEquals(PLAYERS, players);
+        assertArrayEquals(altList().names, altList.names);
+        assertArrayEquals(new int[] {1, 2}, altList.alts[0]);
+        assertNull(altList.alts[1]);
+        assertArrayEquals(new int[] {0}, altList.alts[2]);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A different stamp means the database changed, so nothing is loaded
+    
+    @Test
+    public void staleStampIsIgnored() throws IOException
+    {
+        File file = new File(folder, "indexes.dat");
+        IndexCache.save(file, "stamp1", PLAYERS, altList());
+        
+        List<String> players = new ArrayList<String>();
+        AltCache.Contents altList = new AltCache.Contents();
+        assertFalse(IndexCache.load(file, "stamp2", players, altList));
+        assertTrue(players.isEmpty());
+        assertNull(altList.names);
+        
+        assertFalse(IndexCache.load(new File(folder, "missing.dat"), "stamp1", players, null));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A file saved without the alt list only loads if the alt list isn't
+    // needed
+    
+    @Test
+    public void missingAltList() throws IOException
+    {
+        File file = new File(folder, "indexes.dat");
+        IndexCache.save(file, "stamp1", PLAYERS, null);
+        
+        List<String> players = new ArrayList<String>();
+        assertFalse(IndexCache.load(file, "stamp1", players, new AltCache.Contents()));
+        assertTrue(players.isEmpty());
+        assertTrue(IndexCache.load(file, "stamp1", players, null));
+        assertEquals(PLAYERS, players);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Saving again replaces the file, while it is mapped by an earlier load,
+    // and leaves no temporary file behind
+    
+    @Test
+    public void saveReplacesFile() throws IOException
+    {
+        File file = new File(folder, "indexes.dat");
+        IndexCache.save(file, "stamp1", PLAYERS, null);
+        assertTrue(IndexCache.load(file, "stamp1", new ArrayList<String>(), null));
+        IndexCache.save(file, "stamp2", Arrays.asList("dave"), null);
+        
+        List<String> players = new ArrayList<String>();
+        assertFalse(IndexCache.load(file, "stamp1", players, null));
+        assertTrue(IndexCache.load(file, "stamp2", players, null));
+        assertEquals(Arrays.asList("dave"), players);
+        assertEquals(1, folder.listFiles().length);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A truncated file is reported as corrupt
+    
+    @Test
+    public void truncatedFileIsCorrupt() throws IOException
+    {
+        File file = new File(folder, "indexes.dat");
+        IndexCache.save(file, "stamp1", PLAYERS, altList());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(raf.length() - 6);
+        }
+        
+        assertThrows(IOException.class, () -> IndexCache.load(file, "stamp1", new ArrayList<String>(), new AltCache.Contents()));
+    }
+
+}
@@ -0,0 +1,377 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bobcat00.altdetector.database.Database.IptableType;
+import com.bobcat00.altdetector.database.Database.PlayertableType;
+
+// Tests that the Logstore keeps its data across restarts, purges and
+// compaction
+
+public class LogstoreTest
+{
+    @TempDir
+    File folder;
+    
+    private static final long NOW = System.currentTimeMillis() / 1000;
+    private static final long EXPIRED = NOW - 100 * 86400L;
+    
+    // -------------------------------------------------------------------------
+    
+    private Logstore open()
+    {
+        Logstore logstore = new Logstore(new StandalonePlatform(folder, new Properties()), false, "");
+        assertTrue(logstore.initialize());
+        return logstore;
+    }
+    
+    static String uuid(int i)
+    {
+        return new UUID(0x1234L, i).toString();
+    }
+    
+    private File[] files(String prefix)
+    {
+        File[] files = new File(folder, "logstore").listFiles((dir, name) -> name.startsWith(prefix));
+        Arrays.sort(files);
+        return files;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Entries and name changes are replayed at the next start
+    
+    @Test
+    public void reloadKeepsEntries()
+    {
+        Logstore logstore = open();
+        assertTrue(logstore.addPlayertableEntry("Alice", uuid(1)));
+        assertTrue(logstore.addPlayertableEntry("Bob", uuid(2)));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(1), NOW));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(2), NOW));
+        assertTrue(logstore.updateNameInPlayertable("Bobby", uuid(2)));
+        logstore.closeDataSource();
+        
+        logstore = open();
+        assertEquals("Bobby", logstore.getNameFromPlayertable(uuid(2)));
+        assertTrue(logstore.checkIptableEntry("10.0.0.1", uuid(1)));
+        assertEquals(Arrays.asList("Bobby"), logstore.getAltNames(uuid(1), uuid(1), 60));
+        logstore.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // An older date doesn't replace a newer one, before or after a restart
+    
+    @Test
+    public void olderDateIsIgnored()
+    {
+        Logstore logstore = open();
+        assertTrue(logstore.addPlayertableEntry("Alice", uuid(1)));
+        assertTrue(logstore.addPlayertableEntry("Bob", uuid(2)));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(1), NOW));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(1), EXPIRED));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(2), NOW));
+        assertEquals(Arrays.asList("Alice"), logstore.getAltNames(uuid(2), uuid(2), 60));
+        logstore.closeDataSource();
+        
+        logstore = open();
+        assertEquals(Arrays.asList("Alice"), logstore.getAltNames(uuid(2), uuid(2), 60));
+        logstore.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A purge with few dead records doesn't rewrite the log, so the same
+    // entries are purged again at the next start
+    
+    @Test
+    public void smallPurgeDoesNotCompact()
+    {
+        Logstore logstore = open();
+        assertTrue(logstore.addPlayertableEntry("Alice", uuid(1)));
+        assertTrue(logstore.addPlayertableEntry("Bob", uuid(2)));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(1), NOW));
+        assertTrue(logstore.addIptableEntry("10.0.0.2", uuid(2), EXPIRED));
+        assertEquals(1, logstore.purge(60));
+        assertEquals("", logstore.getNameFromPlayertable(uuid(2)));
+        logstore.closeDataSource();
+        
+        assertEquals(0, files("base-").length);
+        assertEquals(1, files("segment-").length);
+        
+        logstore = open();
+        assertEquals(1, logstore.purge(60));
+        assertEquals("", logstore.getNameFromPlayertable(uuid(2)));
+        assertEquals("Alice", logstore.getNameFromPlayertable(uuid(1)));
+        logstore.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A purge leaving mostly dead records compacts the log into a base file,
+    // and the compacted log has the same live data
+    
+    @Test
+    public void largePurgeCompacts()
+    {
+        Logstore logstore = open();
+        addExpiredPlayers(logstore, 6000);
+        assertTrue(logstore.addPlayertableEntry("Alice", uuid(1)));
+        assertTrue(logstore.addPlayertableEntry("Bob", uuid(2)));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(1), NOW));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(2), NOW));
+        assertEquals(6000, logstore.purge(60));
+        logstore.closeDataSource();
+        
+        File[] bases = files("base-");
+        assertEquals(1, bases.length);
+        for (File segment : files("segment-"))
+        {
+            assertTrue(segment.getName().compareTo(bases[0].getName().replace("base-", "segment-")) > 0);
+        }
+        
+        logstore = open();
+        assertEquals(0, logstore.purge(60));
+        assertEquals(2, logstore.countPlayertableEntries());
+        assertEquals(Arrays.asList("Bob"), logstore.getAltNames(uuid(1), uuid(1), 60));
+        assertEquals(Arrays.asList(uuid(1), uuid(2)), uuids(logstore));
+        logstore.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Old segments left behind by a crash after a compaction are ignored and
+    // deleted, so the purged entries don't come back
+    
+    @Test
+    public void leftoverSegmentsAreIgnored() throws IOException
+    {
+        Logstore logstore = open();
+        addExpiredPlayers(logstore, 6000);
+        assertTrue(logstore.addPlayertableEntry("Alice", uuid(1)));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(1), NOW));
+        logstore.closeDataSource();
+        
+        File backup = new File(folder, "backup");
+        assertTrue(backup.mkdir());
+        File[] oldSegments = files("segment-");
+        for (File segment : oldSegments)
+        {
+            Files.copy(segment.toPath(), new File(backup, segment.getName()).toPath());
+        }
+        
+        logstore = open();
+        assertEquals(6000, logstore.purge(60));
+        logstore.closeDataSource();
+        
+        for (File segment : oldSegments)
+        {
+            Files.copy(new File(backup, segment.getName()).toPath(), segment.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        logstore = open();
+        assertEquals(Arrays.asList(uuid(1)), uuids(logstore));
+        logstore.closeDataSource();
+        for (File segment : oldSegments)
+        {
+            assertFalse(segment.exists());
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Deleting players is kept after a restart, and other players are left
+    
+    @Test
+    public void deletePlayersIsReplayed()
+    {
+        Logstore logstore = open();
+        assertTrue(logstore.addPlayertableEntry("Alice", uuid(1)));
+        assertTrue(logstore.addPlayertableEntry("Bob", uuid(2)));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(1), NOW));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(2), NOW));
+        PlayertableType pt = logstore.new PlayertableType();
+        pt.uuid = uuid(1);
+        pt.name = "Alice";
+        assertTrue(logstore.deletePlayers(Collections.singletonList(pt)));
+        assertEquals(Arrays.asList(uuid(2)), uuids(logstore));
+        logstore.closeDataSource();
+        
+        logstore = open();
+        assertEquals(Arrays.asList(uuid(2)), uuids(logstore));
+        assertFalse(logstore.checkIptableEntry("10.0.0.1", uuid(1)));
+        assertTrue(logstore.checkIptableEntry("10.0.0.1", uuid(2)));
+        logstore.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A write which fails partway through is truncated away, so the records
+    // appended after it are still replayed
+    
+    @Test
+    public void failedWriteIsTruncated()
+    {
+        Logstore logstore = open();
+        assertTrue(logstore.addPlayertableEntry("Alice", uuid(1)));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(1), NOW));
+        
+        FileChannel channel = logstore.segment;
+        logstore.segment = new FailingChannel(channel, 5);
+        assertFalse(logstore.addPlayertableEntry("Bob", uuid(2)));
+        logstore.segment = channel;
+        assertEquals("", logstore.getNameFromPlayertable(uuid(2)));
+        
+        assertTrue(logstore.addPlayertableEntry("Carol", uuid(3)));
+        assertTrue(logstore.addIptableEntry("10.0.0.1", uuid(3), NOW));
+        logstore.closeDataSource();
+        
+        logstore = open();
+        assertEquals(Arrays.asList(uuid(1), uuid(3)), uuids(logstore));
+        assertEquals(Arrays.asList("Carol"), logstore.getAltNames(uuid(1), uuid(1), 60));
+        logstore.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Add players with one expired entry each, 2 records per player
+    
+    private static void addExpiredPlayers(Logstore logstore, int count)
+    {
+        for (int start = 0; start < count; start += 1000)
+        {
+            List<PlayertableType> players = new ArrayList<PlayertableType>();
+            List<IptableType> entries = new ArrayList<IptableType>();
+            for (int i = start; i < Math.min(count, start + 1000); ++i)
+            {
+                PlayertableType pt = logstore.new PlayertableType();
+                pt.uuid = uuid(1000 + i);
+                pt.name = "Expired" + i;
+                players.add(pt);
+                IptableType ipt = logstore.new IptableType();
+                ipt.ipaddr = "10.1." + (i / 256) + "." + (i % 256);
+                ipt.uuid = pt.uuid;
+                ipt.unixdate = EXPIRED;
+                entries.add(ipt);
+            }
+            assertTrue(logstore.addPlayertableEntries(players));
+            assertTrue(logstore.addIptableEntries(entries));
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A channel which writes a few bytes and then fails, like a full disk
+    
+    private static class FailingChannel extends FileChannel
+    {
+        private final FileChannel channel;
+        private int allowed;
+        
+        FailingChannel(FileChannel channel, int allowed)
+        {
+            this.channel = channel;
+            this.allowed = allowed;
+        }
+        
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            if (allowed == 0)
+            {
+                throw new IOException("No space left on device");
+            }
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + Math.min(allowed, part.remaining()));
+            int written = channel.write(part);
+            src.position(src.position() + written);
+            allowed -= written;
+            return written;
+        }
+        
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException
+        {
+            throw new IOException("No space left on device");
+        }
+        
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException
+        {
+            throw new IOException("No space left on device");
+        }
+        
+        @Override public int read(ByteBuffer dst) throws IOException {return channel.read(dst);}
+        @Override public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {return channel.read(dsts, offset, length);}
+        @Override public int read(ByteBuffer dst, long position) throws IOException {return channel.read(dst, position);}
+        @Override public long position() throws IOException {return channel.position();}
+        @Override public FileChannel position(long newPosition) throws IOException {channel.position(newPosition); return this;}
+        @Override public long size() throws IOException {return channel.size();}
+        @Override public FileChannel truncate(long size) throws IOException {channel.truncate(size); return this;}
+        @Override public void force(boolean metaData) throws IOException {channel.force(metaData);}
+        @Override public long transferTo(long position, long count, WritableByteChannel target) throws IOException {return channel.transferTo(position, count, target);}
+        @Override public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {return channel.transferFrom(src, position, count);}
+        @Override public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {return channel.map(mode, position, size);}
+        @Override public FileLock lock(long position, long size, boolean shared) throws IOException {return channel.lock(position, size, shared);}
+        @Override public FileLock tryLock(long position, long size, boolean shared) throws IOException {return channel.tryLock(position, size, shared);}
+        @Override protected void implCloseChannel() throws IOException {channel.close();}
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Sorted UUIDs in playertable
+    
+    private static List<String> uuids(Database database)
+    {
+        final List<String> uuids = new ArrayList<String>();
+        assertTrue(database.streamPlayertable(1000, batch ->
+        {
+            for (PlayertableType pt : batch)
+            {
+                uuids.add(pt.uuid);
+            }
+        }));
+        Collections.sort(uuids);
+        return uuids;
+    }
+
+}
@@ -0,0 +1,236 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bobcat00.altdetector.database.Database.IptableType;
+import com.bobcat00.altdetector.database.Database.PlayertableType;
+
+// Tests that a snapshot reproduces the database it was exported from, and
+// that a failed import removes only what it inserted. Logstore is used for
+// both ends, since it needs no database server or driver.
+
+public class SnapshotTest
+{
+    @TempDir
+    File folder;
+    
+    private static final long NOW = System.currentTimeMillis() / 1000;
+    
+    // -------------------------------------------------------------------------
+    
+    private Logstore open(String name)
+    {
+        Logstore logstore = new Logstore(new StandalonePlatform(new File(folder, name), new Properties()), false, "");
+        assertTrue(logstore.initialize());
+        return logstore;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Export and import give the same players and entries, including IPv6
+    // and addresses which aren't stored in binary
+    
+    @Test
+    public void roundTrip() throws IOException
+    {
+        Logstore source = open("source");
+        assertTrue(source.addPlayertableEntry("Alice", LogstoreTest.uuid(1)));
+        assertTrue(source.addPlayertableEntry("Bob", LogstoreTest.uuid(2)));
+        assertTrue(source.addPlayertableEntry("Carol", LogstoreTest.uuid(3)));
+        assertTrue(source.addIptableEntry("10.0.0.1", LogstoreTest.uuid(1), NOW));
+        assertTrue(source.addIptableEntry("10.0.0.1", LogstoreTest.uuid(2), NOW - 3600));
+        assertTrue(source.addIptableEntry("2001:db8:0:0:0:0:0:1", LogstoreTest.uuid(2), NOW - 86400));
+        assertTrue(source.addIptableEntry("not-an-address", LogstoreTest.uuid(3), NOW - 7200));
+        
+        File file = new File(folder, "snapshot.bin");
+        Snapshot export = new Snapshot(source);
+        export.export(file);
+        assertEquals(3, export.getPlayerCount());
+        assertEquals(4, export.getRecordCount());
+        
+        Logstore target = open("target");
+        Snapshot load = new Snapshot(target);
+        load.load(file);
+        assertEquals(3, load.getPlayerCount());
+        assertEquals(4, load.getRecordCount());
+        
+        assertEquals(players(source), players(target));
+        assertEquals(entries(source), entries(target));
+        
+        source.closeDataSource();
+        target.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A database which isn't empty is left alone
+    
+    @Test
+    public void loadRefusesNonEmptyDatabase() throws IOException
+    {
+        Logstore source = open("source");
+        assertTrue(source.addPlayertableEntry("Alice", LogstoreTest.uuid(1)));
+        File file = new File(folder, "snapshot.bin");
+        new Snapshot(source).export(file);
+        
+        Logstore target = open("target");
+        assertTrue(target.addPlayertableEntry("Bob", LogstoreTest.uuid(2)));
+        assertThrows(IOException.class, () -> new Snapshot(target).load(file));
+        assertEquals(1, target.countPlayertableEntries());
+        assertEquals("Bob", target.getNameFromPlayertable(LogstoreTest.uuid(2)));
+        
+        source.closeDataSource();
+        target.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A file which fails its CRC is rejected before anything is inserted
+    
+    @Test
+    public void corruptFileInsertsNothing() throws IOException
+    {
+        Logstore source = open("source");
+        assertTrue(source.addPlayertableEntry("Alice", LogstoreTest.uuid(1)));
+        assertTrue(source.addIptableEntry("10.0.0.1", LogstoreTest.uuid(1), NOW));
+        File file = new File(folder, "snapshot.bin");
+        new Snapshot(source).export(file);
+        
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file.toPath(), bytes);
+        
+        Logstore target = open("target");
+        assertThrows(IOException.class, () -> new Snapshot(target).load(file));
+        assertEquals(0, target.countPlayertableEntries());
+        
+        source.closeDataSource();
+        target.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // A file which passes the checks but fails to insert part way through,
+    // here because of a duplicate player in the second batch, removes the
+    // players it inserted. A player who joined during the import is kept.
+    
+    @Test
+    public void failedInsertIsUndone() throws IOException
+    {
+        int players = 1001;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        buffer.putInt(0x4144534E); // ADSN
+        buffer.putShort((short)1);
+        buffer.putInt(players);
+        for (int i = 0; i < players; ++i)
+        {
+            UUID uuid = UUID.fromString(LogstoreTest.uuid(i % 1000));
+            byte[] name = ("Player" + i).getBytes(StandardCharsets.UTF_8);
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+            buffer.putShort((short)name.length);
+            buffer.put(name);
+        }
+        buffer.put((byte)0); // no records
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int)crc.getValue());
+        
+        File file = new File(folder, "snapshot.bin");
+        byte[] bytes = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+        Files.write(file.toPath(), bytes);
+        
+        Logstore target = new Logstore(new StandalonePlatform(new File(folder, "target"), new Properties()), false, "")
+        {
+            // A player joins after the first batch is inserted
+            @Override
+            public boolean addPlayertableEntries(List<PlayertableType> entries)
+            {
+                if (countPlayertableEntries() > 0)
+                {
+                    assertTrue(addPlayertableEntry("Joiner", LogstoreTest.uuid(5000)));
+                    assertTrue(addIptableEntry("10.0.0.1", LogstoreTest.uuid(5000), NOW));
+                }
+                return super.addPlayertableEntries(entries);
+            }
+        };
+        assertTrue(target.initialize());
+        assertThrows(IOException.class, () -> new Snapshot(target).load(file));
+        assertEquals(1, target.countPlayertableEntries());
+        assertEquals("Joiner", target.getNameFromPlayertable(LogstoreTest.uuid(5000)));
+        target.closeDataSource();
+        
+        // The same after a restart
+        Logstore reopened = open("target");
+        assertEquals(1, reopened.countPlayertableEntries());
+        assertTrue(reopened.checkIptableEntry("10.0.0.1", LogstoreTest.uuid(5000)));
+        reopened.closeDataSource();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Sorted contents of the tables
+    
+    private static List<String> players(Database database)
+    {
+        final List<String> players = new ArrayList<String>();
+        assertTrue(database.streamPlayertable(1000, batch ->
+        {
+            for (PlayertableType pt : batch)
+            {
+                players.add(pt.uuid + " " + pt.name);
+            }
+        }));
+        Collections.sort(players);
+        return players;
+    }
+    
+    private static List<String> entries(Database database)
+    {
+        final List<String> entries = new ArrayList<String>();
+        assertTrue(database.streamIptable(1000, batch ->
+        {
+            for (IptableType ipt : batch)
+            {
+                entries.add(ipt.ipaddr + " " + ipt.uuid + " " + ipt.unixdate);
+            }
+        }));
+        Collections.sort(entries);
+        return entries;
+    }
+
+}
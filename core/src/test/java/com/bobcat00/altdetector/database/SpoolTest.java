@@ -0,0 +1,151 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bobcat00.altdetector.database.Spool.JoinRecord;
+
+// Tests that spooled joins are replayed once, in order, across restarts
+
+public class SpoolTest
+{
+    @TempDir
+    File folder;
+    
+    // -------------------------------------------------------------------------
+    
+    private static JoinRecord join(long unixdate, String ipaddr, int player)
+    {
+        JoinRecord record = new JoinRecord();
+        record.unixdate = unixdate;
+        record.ipaddr = ipaddr;
+        record.uuid = LogstoreTest.uuid(player);
+        record.name = "Player" + player;
+        return record;
+    }
+    
+    private static void assertJoin(JoinRecord expected, JoinRecord actual)
+    {
+        assertEquals(expected.unixdate, actual.unixdate);
+        assertEquals(expected.ipaddr, actual.ipaddr);
+        assertEquals(expected.uuid, actual.uuid);
+        assertEquals(expected.name, actual.name);
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Appended joins are returned by the replay in order
+    
+    @Test
+    public void replayReturnsAppendedJoins() throws IOException
+    {
+        Spool spool = new Spool(new File(folder, "spool.log"));
+        assertFalse(spool.hasPending());
+        
+        JoinRecord[] joins = {join(1000, "10.0.0.1", 1), join(1001, "10.0.0.2", 2), join(1002, "2001:db8::1", 3)};
+        for (JoinRecord join : joins)
+        {
+            spool.append(join);
+        }
+        assertTrue(spool.hasPending());
+        
+        List<JoinRecord> replay = spool.startReplay();
+        assertEquals(joins.length, replay.size());
+        for (int i = 0; i < joins.length; ++i)
+        {
+            assertJoin(joins[i], replay.get(i));
+        }
+        
+        spool.saveReplay(Collections.<JoinRecord>emptyList());
+        assertFalse(spool.hasPending());
+        spool.close();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // An unfinished replay is resumed after a restart with the joins not yet
+    // replayed, and joins appended during the replay come after it
+    
+    @Test
+    public void unfinishedReplayResumes() throws IOException
+    {
+        File file = new File(folder, "spool.log");
+        Spool spool = new Spool(file);
+        spool.append(join(1000, "10.0.0.1", 1));
+        spool.append(join(1001, "10.0.0.2", 2));
+        
+        List<JoinRecord> replay = spool.startReplay();
+        assertEquals(2, replay.size());
+        JoinRecord during = join(1002, "10.0.0.3", 3);
+        spool.append(during);
+        spool.saveReplay(replay.subList(1, 2));
+        spool.close();
+        
+        spool = new Spool(file);
+        assertTrue(spool.hasPending());
+        replay = spool.startReplay();
+        assertEquals(1, replay.size());
+        assertJoin(join(1001, "10.0.0.2", 2), replay.get(0));
+        spool.saveReplay(Collections.<JoinRecord>emptyList());
+        
+        assertTrue(spool.hasPending());
+        replay = spool.startReplay();
+        assertEquals(1, replay.size());
+        assertJoin(during, replay.get(0));
+        spool.saveReplay(Collections.<JoinRecord>emptyList());
+        assertFalse(spool.hasPending());
+        spool.close();
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // An incomplete last line from a crash is skipped, and the next join
+    // starts on a new line
+    
+    @Test
+    public void incompleteLineIsSkipped() throws IOException
+    {
+        File file = new File(folder, "spool.log");
+        Spool spool = new Spool(file);
+        spool.append(join(1000, "10.0.0.1", 1));
+        spool.close();
+        Files.write(file.toPath(), "1001\t10.0.0.2\t".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        
+        spool = new Spool(file);
+        spool.append(join(1002, "10.0.0.3", 3));
+        List<JoinRecord> replay = spool.startReplay();
+        assertEquals(2, replay.size());
+        assertJoin(join(1000, "10.0.0.1", 1), replay.get(0));
+        assertJoin(join(1002, "10.0.0.3", 3), replay.get(1));
+        spool.close();
+    }
+
+}
@@ -0,0 +1,176 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.proxy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import com.bobcat00.altdetector.database.AltMessage;
+import com.bobcat00.altdetector.database.Database;
+import com.bobcat00.altdetector.database.DatabaseConfig;
+import com.bobcat00.altdetector.database.Platform;
+
+import net.md_5.bungee.api.plugin.Plugin;
+
+// AltDetector on a BungeeCord proxy. Joins are recorded and alts are looked
+// up once, when the player logs in to the proxy, instead of on every backend
+// server the player connects to. The alts are sent to the first backend
+// server, which runs AltDetector with join-mode proxy and notifies its staff.
+
+public class AltDetectorProxy extends Plugin implements Platform
+{
+    ProxyConfig config;
+    Database database;
+    private int expirationTime = 60;
+    
+    private static final String SPOOL_FILE_NAME = "spool.log";
+    
+    @Override
+    public void onEnable()
+    {
+        // Config
+        
+        try
+        {
+            saveDefaultConfig();
+            config = new ProxyConfig(new File(getDataFolder(), "config.yml"));
+        }
+        catch (IOException e)
+        {
+            getLogger().warning("Unable to load config.yml: " + e.getMessage());
+            return;
+        }
+        
+        expirationTime = config.getExpirationTime();
+        
+        // Database
+        
+        database = Database.create(this, config.getDatabaseType(), config.getSqlDebug(), config.getMysqlPrefix());
+        
+        if (!database.initialize())
+        {
+            getLogger().warning("Initialization of " + database.toString() + " database failed.");
+            return;
+        }
+        getLogger().info("Using " + database.toString() + " database, version " + database.getSqlVersion() + ", driver version " + database.getDriverVersion());
+        
+        // Spool joins to file while the database is unavailable
+        
+        if (database.enableSpool(new File(getDataFolder(), SPOOL_FILE_NAME)))
+        {
+            getProxy().getScheduler().schedule(this, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    database.processSpool();
+                }
+            }, 1L, 1L, TimeUnit.SECONDS);
+        }
+        
+        // Cache of SQL alt lookups
+        
+        if (config.getAltCacheSeconds() > 0)
+        {
+            database.enableAltResultCache(config.getAltCacheSeconds());
+        }
+        
+        // Read the changes made by backend servers sharing the database, such
+        // as /alt delete
+        
+        if (config.getMysqlChangelogSeconds() > 0)
+        {
+            if (database.enableChangelog())
+            {
+                long seconds = config.getMysqlChangelogSeconds();
+                getProxy().getScheduler().schedule(this, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        database.pollChangelog();
+                    }
+                }, seconds, seconds, TimeUnit.SECONDS);
+            }
+            else
+            {
+                getLogger().warning("Changelog requires MySQL, disabled.");
+            }
+        }
+        
+        // Listeners
+        
+        getProxy().registerChannel(AltMessage.CHANNEL);
+        getProxy().getPluginManager().registerListener(this, new ProxyListeners(this));
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Copy the default config.yml to the data folder, if there isn't one
+    
+    private void saveDefaultConfig() throws IOException
+    {
+        File file = new File(getDataFolder(), "config.yml");
+        if (!file.exists())
+        {
+            getDataFolder().mkdirs();
+            try (InputStream in = getResourceAsStream("config.yml"))
+            {
+                Files.copy(in, file.toPath());
+            }
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Platform used by the database
+    
+    public DatabaseConfig getDatabaseConfig()
+    {
+        return config;
+    }
+    
+    public int getExpirationTime()
+    {
+        return expirationTime;
+    }
+    
+    // There are no placeholders on the proxy
+    
+    public boolean isPlaceholderEnabled()
+    {
+        return false;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    @Override
+    public void onDisable()
+    {
+        // Stop the spool and changelog timers before the database is closed
+        getProxy().getScheduler().cancel(this);
+        
+        if (database != null)
+        {
+            database.closeDataSource();
+        }
+    }
+
+}
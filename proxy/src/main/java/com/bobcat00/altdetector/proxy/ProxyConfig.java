@@ -0,0 +1,137 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.proxy;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.bobcat00.altdetector.database.DatabaseConfig;
+
+import net.md_5.bungee.config.Configuration;
+import net.md_5.bungee.config.ConfigurationProvider;
+import net.md_5.bungee.config.YamlConfiguration;
+
+// The proxy's config.yml. It has the database settings of the backend
+// servers' config.yml, with the same names and defaults.
+
+public class ProxyConfig implements DatabaseConfig
+{
+    private Configuration config;
+    
+    public ProxyConfig(File file) throws IOException
+    {
+        config = ConfigurationProvider.getProvider(YamlConfiguration.class).load(file);
+    }
+    
+    public int getExpirationTime()
+    {
+        return config.getInt("expiration-time", 60);
+    }
+    
+    public String getDatabaseType()
+    {
+        return config.getString("database-type", "sqlite");
+    }
+    
+    public String getMysqlHostname()
+    {
+        return config.getString("mysql.hostname", "127.0.0.1");
+    }
+    
+    public String getMysqlUsername()
+    {
+        return config.getString("mysql.username", "username");
+    }
+    
+    public String getMysqlPassword()
+    {
+        return config.getString("mysql.password", "password");
+    }
+    
+    public String getMysqlDatabase()
+    {
+        return config.getString("mysql.database", "database");
+    }
+    
+    public String getMysqlPrefix()
+    {
+        return config.getString("mysql.prefix", "altdetector_");
+    }
+    
+    public int getMysqlPort()
+    {
+        return config.getInt("mysql.port", 3306);
+    }
+    
+    public String getJdbcurlProperties()
+    {
+        return config.getString("mysql.jdbcurl-properties", "");
+    }
+    
+    public String getMysqlReplicaHostname()
+    {
+        return config.getString("mysql.replica-hostname", "");
+    }
+    
+    public int getMysqlReplicaPort()
+    {
+        return config.getInt("mysql.replica-port", 3306);
+    }
+    
+    public int getMysqlReplicaPinSeconds()
+    {
+        return config.getInt("mysql.replica-pin-seconds", 5);
+    }
+    
+    public int getMysqlChangelogSeconds()
+    {
+        return config.getInt("mysql.changelog-seconds", 0);
+    }
+    
+    public String getMysqlRealm()
+    {
+        return config.getString("mysql.realm", "");
+    }
+    
+    public boolean isMysqlNetworkScope()
+    {
+        return config.getString("mysql.scope", "realm").equalsIgnoreCase("network");
+    }
+    
+    public boolean getSqlDebug()
+    {
+        return config.getBoolean("sql-debug", false);
+    }
+    
+    public int getAltCacheSeconds()
+    {
+        return config.getInt("alt-cache-seconds", 0);
+    }
+    
+    public int getDateGranularityMinutes()
+    {
+        return config.getInt("date-granularity-minutes", 60);
+    }
+    
+    // Not used, since there are no placeholders on the proxy
+    
+    public String getPlaceholderSeparator()
+    {
+        return ", ";
+    }
+
+}
@@ -0,0 +1,150 @@
+// AltDetector - Detects possible alt accounts
+// Copyright 2025 Bobcat00
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.bobcat00.altdetector.proxy;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.bobcat00.altdetector.database.AltMessage;
+import com.bobcat00.altdetector.database.IpAddress;
+
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+import net.md_5.bungee.api.event.PlayerDisconnectEvent;
+import net.md_5.bungee.api.event.PluginMessageEvent;
+import net.md_5.bungee.api.event.PostLoginEvent;
+import net.md_5.bungee.api.event.ServerSwitchEvent;
+import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.event.EventHandler;
+
+public class ProxyListeners implements Listener
+{
+    private AltDetectorProxy plugin;
+    
+    // Alts looked up at login, by UUID, waiting for the player to connect to
+    // a backend server. The lookup and the connection can finish in either
+    // order. Whichever finishes second removes the entry and sends it, so it
+    // is sent exactly once.
+    private Map<String, AltMessage> pending = new ConcurrentHashMap<String, AltMessage>();
+    
+    // Constructor
+    
+    public ProxyListeners(AltDetectorProxy plugin)
+    {
+        this.plugin = plugin;
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // This is the listener for the Post Login Event. It updates the database
+    // and looks up the alts on an async thread. This is done once per login to
+    // the network, not for every backend server the player switches to.
+    
+    @EventHandler
+    public void onPostLogin(PostLoginEvent event)
+    {
+        final ProxiedPlayer player = event.getPlayer();
+        
+        // Skip if player is exempt
+        if (player.hasPermission("altdetector.exempt"))
+        {
+            return;
+        }
+        
+        // Get info about this player
+        final String ip = IpAddress.format(((InetSocketAddress) player.getSocketAddress()).getAddress());
+        final String uuid = player.getUniqueId().toString();
+        final String name = player.getName();
+        
+        plugin.getProxy().getScheduler().runAsync(plugin, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // 1. Update playertable and iptable
+                
+                plugin.database.recordJoin(name, uuid, ip);
+                
+                // 2. Get possible alts
+                
+                List<String> altList = plugin.database.getAltNames(uuid, uuid, plugin.getExpirationTime());
+                
+                // 3. Send them, if the player is already on a backend server
+                
+                pending.put(uuid, new AltMessage(uuid, name, altList));
+                if (player.isConnected() && (player.getServer() != null))
+                {
+                    send(player);
+                }
+            }
+        }
+        );
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // This is the listener for the Server Switch Event, called when a player
+    // has connected to a backend server. Only the first one gets the alts.
+    
+    @EventHandler
+    public void onServerSwitch(ServerSwitchEvent event)
+    {
+        send(event.getPlayer());
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Send the player's alts to the player's backend server, if they are
+    // waiting
+    
+    private void send(ProxiedPlayer player)
+    {
+        AltMessage message = pending.remove(player.getUniqueId().toString());
+        Server server = player.getServer();
+        if ((message != null) && (server != null))
+        {
+            server.sendData(AltMessage.CHANNEL, message.toBytes());
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Discard the alts of a player who left before reaching a backend server
+    
+    @EventHandler
+    public void onPlayerDisconnect(PlayerDisconnectEvent event)
+    {
+        pending.remove(event.getPlayer().getUniqueId().toString());
+    }
+    
+    // -------------------------------------------------------------------------
+    
+    // Only the proxy sends messages on the alts channel. Don't pass on ones
+    // from clients, which could be forged, or from backend servers.
+    
+    @EventHandler
+    public void onPluginMessage(PluginMessageEvent event)
+    {
+        if (event.getTag().equals(AltMessage.CHANNEL))
+        {
+            event.setCancelled(true);
+        }
+    }
+
+}